@@ -0,0 +1,270 @@
+package main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Read-only JSON over HTTP on localhost, for scripts and dashboards reading the goals while the app runs.
+ * Started when {@code -Dgoals.apiPort} is given:
+ * <ul>
+ * <li>{@code GET /goals?from=&to=} - goals open at some point of [from, to], sorted by initiation;</li>
+ * <li>{@code GET /goals/<id>} - a single goal;</li>
+ * <li>{@code GET /stats?from=&to=} - numbers of goals started and completed in [from, to] and times to completion.</li>
+ * </ul>
+ * Moments are milliseconds since the epoch, and both ends of a range are optional. Goals are read from the
+ * {@link GoalRepository} a page at a time, and statistics from an immutable copy republished by
+ * {@link #publish()} on the event dispatch thread, so requests never wait for the model or see it half-changed.
+ * {@link Main} sets {@code sun.net.httpserver.nodelay} unless it's given; without it the last chunk of a
+ * response waits for the delayed acknowledgement of the previous one. Launchers using this class on their own
+ * should pass {@code -Dsun.net.httpserver.nodelay=true}.
+ */
+public class ApiServer {
+	private static final String JSON = "application/json; charset=utf-8";
+	private static final int CHUNK = 16 * 1024, PAGE = 1000;
+
+	private final HttpServer server;
+	private volatile Snapshot snapshot;
+	private int publishedModCount = -1, publishedStatisticsModCount = -1;
+
+	private ApiServer(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		// the handlers only read the snapshot or the repository and write to the socket, so a thread per core keeps up
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+			Thread thread = new Thread(r, "API");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/goals", this::onGoals);
+		server.createContext("/stats", this::onStats);
+	}
+
+	/**
+	 * Must be called on the event dispatch thread after {@link AppData#init()}.
+	 *
+	 * @return the started server, or null if {@code -Dgoals.apiPort} isn't given
+	 */
+	public static ApiServer start() throws IOException {
+		String port = System.getProperty("goals.apiPort");
+		if (port == null) return null;
+		ApiServer api;
+		try {
+			api = new ApiServer(Integer.parseInt(port));
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid port \"" + port + "\"");
+		}
+		api.publish();
+		api.server.start();
+		return api;
+	}
+
+	/**
+	 * Copies the statistics for the requests to come if the goals changed since the last call. Must be called
+	 * on the event dispatch thread.
+	 */
+	public void publish() {
+		if (AppData.getModCount() == publishedModCount) return;
+		publishedModCount = AppData.getModCount();
+
+		int open = 0;
+		for (Goal g : AppData.getGoals()) {
+			if (!g.isCompleted()) open++;
+		}
+		Statistics statistics = AppData.getStatistics();
+		Snapshot previous = snapshot;
+		if (previous == null || statistics.getModCount() != publishedStatisticsModCount) {
+			publishedStatisticsModCount = statistics.getModCount();
+			statistics = statistics.copy();
+		} else statistics = previous.statistics;
+		snapshot = new Snapshot(statistics, open);
+	}
+
+	private void onGoals(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!isGet(exchange)) return;
+			GoalRepository repository = AppData.getRepository();
+			String path = exchange.getRequestURI().getPath();
+			if (path.equals("/goals") || path.equals("/goals/")) {
+				long[] range = parseRange(exchange);
+				if (range == null) return;
+				long now = System.currentTimeMillis();
+				exchange.getResponseHeaders().set("Content-Type", JSON);
+				exchange.sendResponseHeaders(200, 0); // chunked, so the goals are sent while the rest are read
+				try (OutputStream out = exchange.getResponseBody()) {
+					StringBuilder json = new StringBuilder(CHUNK + 1024).append('[');
+					boolean first = true;
+					List<Goal> page = repository.findInRange(range[0], range[1], null, PAGE);
+					while (true) {
+						for (Goal g : page) {
+							// open goals extend indefinitely in the repository, but only up to now here
+							if (!g.isCompleted() && now < range[0]) continue;
+							if (!first) json.append(',');
+							first = false;
+							appendGoal(json, g, now);
+							if (json.length() >= CHUNK) {
+								out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+								json.setLength(0);
+							}
+						}
+						if (page.size() < PAGE) break;
+						page = repository.findInRange(range[0], range[1], page.get(page.size() - 1), PAGE);
+					}
+					out.write(json.append(']').toString().getBytes(StandardCharsets.UTF_8));
+				}
+				return;
+			}
+
+			int id;
+			try {
+				if (!path.startsWith("/goals/")) throw new NumberFormatException();
+				id = Integer.parseInt(path.substring("/goals/".length()));
+			} catch (NumberFormatException e) {
+				sendError(exchange, 404, "No such resource");
+				return;
+			}
+			Goal g = repository.findById(id);
+			if (g == null) {
+				sendError(exchange, 404, "No goal " + id);
+				return;
+			}
+			StringBuilder json = new StringBuilder();
+			appendGoal(json, g, System.currentTimeMillis());
+			sendJson(exchange, 200, json);
+		}
+	}
+
+	private void onStats(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			if (!isGet(exchange)) return;
+			if (!exchange.getRequestURI().getPath().equals("/stats")) {
+				sendError(exchange, 404, "No such resource");
+				return;
+			}
+			long[] range = parseRange(exchange);
+			if (range == null) return;
+			// days are clamped to the ones Statistics covers anyway, but the moments mustn't overflow on the way
+			long from = Math.max(range[0], Long.MIN_VALUE / 2), to = Math.min(range[1], Long.MAX_VALUE / 2);
+			Snapshot s = snapshot;
+			Statistics statistics = s.statistics;
+			QuantileSketch times = statistics.completionTimes(from, to);
+			StringBuilder json = new StringBuilder()
+					.append("{\"started\":").append(statistics.countInitiated(from, to))
+					.append(",\"completed\":").append(statistics.countCompleted(from, to))
+					.append(",\"open\":").append(s.open)
+					.append(",\"completionTime\":");
+			if (times.getCount() == 0) json.append("null");
+			else json.append("{\"median\":").append(times.quantile(0.5)).append(",\"p90\":").append(times.quantile(0.9)).append('}');
+			sendJson(exchange, 200, json.append('}'));
+		}
+	}
+
+	private static boolean isGet(HttpExchange exchange) throws IOException {
+		if (exchange.getRequestMethod().equals("GET")) return true;
+		exchange.getResponseHeaders().set("Allow", "GET");
+		sendError(exchange, 405, "Only GET is supported");
+		return false;
+	}
+
+	/**
+	 * @return [from, to] from the query, or null if an error was sent instead
+	 */
+	private static long[] parseRange(HttpExchange exchange) throws IOException {
+		Map<String, String> parameters = parseQuery(exchange.getRequestURI());
+		long[] range = {Long.MIN_VALUE, Long.MAX_VALUE};
+		String[] names = {"from", "to"};
+		for (int i = 0; i < 2; i++) {
+			String value = parameters.get(names[i]);
+			if (value == null || value.isEmpty()) continue;
+			try {
+				range[i] = Long.parseLong(value);
+			} catch (NumberFormatException e) {
+				sendError(exchange, 400, "\"" + names[i] + "\" has to be milliseconds since the epoch");
+				return null;
+			}
+		}
+		return range;
+	}
+
+	private static Map<String, String> parseQuery(URI uri) {
+		Map<String, String> result = new HashMap<>();
+		String query = uri.getRawQuery();
+		if (query == null) return result;
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals == -1) continue;
+			result.put(URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+					URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+		}
+		return result;
+	}
+
+	private static void sendJson(HttpExchange exchange, int status, CharSequence json) throws IOException {
+		byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(status, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+		StringBuilder json = new StringBuilder("{\"error\":");
+		appendString(json, message);
+		sendJson(exchange, status, json.append('}'));
+	}
+
+	private static void appendGoal(StringBuilder json, Goal g, long now) {
+		json.append("{\"id\":").append(g.getId()).append(",\"name\":");
+		appendString(json, g.getName());
+		json.append(",\"started\":").append(g.getInitiated()).append(",\"completed\":");
+		if (g.isCompleted()) json.append(g.getCompleted());
+		else json.append("null");
+		json.append(",\"deadline\":");
+		if (g.hasDeadline()) json.append(g.getDeadline());
+		else json.append("null");
+		// worked out here, as the stored goals aren't rewritten when a deadline passes
+		json.append(",\"overdue\":").append(g.hasDeadline() && !g.isCompleted() && g.getDeadline() <= now).append(",\"tags\":[");
+		List<String> tags = g.getTags();
+		for (int i = 0; i < tags.size(); i++) {
+			if (i != 0) json.append(',');
+			appendString(json, tags.get(i));
+		}
+		json.append("]}");
+	}
+
+	private static void appendString(StringBuilder json, String s) {
+		json.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '"' -> json.append("\\\"");
+				case '\\' -> json.append("\\\\");
+				case '\n' -> json.append("\\n");
+				case '\r' -> json.append("\\r");
+				case '\t' -> json.append("\\t");
+				default -> {
+					if (c < 0x20) json.append(String.format("\\u%04x", (int) c));
+					else json.append(c);
+				}
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * A detached copy of the statistics, never modified once published.
+	 */
+	private record Snapshot(Statistics statistics, int open) {
+	}
+}
@@ -1,169 +1,413 @@
 package main;
 
-import java.io.ByteArrayOutputStream;
+import javax.swing.*;
 import java.io.File;
-import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class AppData {
-	private static final int VERSION = 1;
-
-	private static final String PATH = "C:/Users/" + System.getProperty("user.name") + "/AppData/Roaming/Goals Tracker/";
-	private static File goalsFile;
+	private static GoalRepository repository;
+	private static Journal journal;
+	private static History history;
+	private static Statistics statistics;
+	private static Reminders reminders;
 	private static List<Goal> goals;
+	private static List<Goal> goalsById = new ArrayList<>();
+	private static TagIndex tagIndex = new TagIndex();
+	private static final NamePool names = new NamePool();
+	private static RoaringBitmap shownIds; // null when no filter is set
+	private static String filter;
+	private static View shownView;
+	// placed views by filter expression (null for all goals), so switching back to a filter costs a lookup;
+	// dropped on every change to the goals
+	private static final Map<String, View> filteredViews = new HashMap<>();
+	private static int modCount;
 
 	public static void init() {
-		File directory = new File(PATH);
-		if (directory.isFile()) throw new Error("There's a file occupying " + PATH);
+		File directory = getDirectory();
+		if (directory.isFile()) throw new Error("There's a file occupying " + directory);
 		if (!directory.isDirectory()) {
-			if (!directory.mkdir()) throw new Error("Failed to create a directory at " + PATH);
+			if (!directory.mkdirs()) throw new Error("Failed to create a directory at " + directory);
 		}
 
-		goalsFile = new File(directory, "goals.bin");
-		if (goalsFile.isDirectory()) throw new Error(goalsFile.getAbsolutePath() + " is occupied by a directory");
-		if (goalsFile.exists()) {
-			loadGoals();
-			recalculatePlacement();
-		} else goals = new ArrayList<>();
+		repository = createRepository(directory);
+		goals = repository.loadAll();
+		goals.forEach(AppData::register);
+		journal = new Journal(new File(directory, "history.bin"), AppData::mergeForeignEvents);
+		history = new History();
+		journal.open(History.reconstruct(goals)).forEach(history::record);
+		reconcileWithHistory();
+		recalculatePlacement();
+		statistics = new Statistics();
+		statistics.load(goals);
+		reminders = new Reminders(System.currentTimeMillis());
+		reminders.load(goals, System.currentTimeMillis());
+		journal.watch(SwingUtilities::invokeLater);
+	}
+
+	/**
+	 * Can be used before {@link #init()}; see {@link StartupSnapshot}.
+	 */
+	public static File getSnapshotFile() {
+		return new File(getDirectory(), "snapshot.bin");
+	}
+
+	/**
+	 * %APPDATA%/Goals Tracker on Windows, ~/.goals-tracker elsewhere, unless {@code -Dgoals.directory} is given.
+	 */
+	private static File getDirectory() {
+		String directory = System.getProperty("goals.directory");
+		if (directory != null) return new File(directory);
+		String appData = System.getenv("APPDATA");
+		if (appData != null) return new File(appData, "Goals Tracker");
+		return new File(System.getProperty("user.home"), ".goals-tracker");
+	}
+
+	/**
+	 * The goals.bin file unless {@code -Dgoals.storage=sql} is given; the database location defaults to
+	 * goals.db in the data directory and can be changed with {@code -Dgoals.jdbcUrl}.
+	 */
+	private static GoalRepository createRepository(File directory) {
+		String storage = System.getProperty("goals.storage", "binary");
+		return switch (storage) {
+			case "binary" -> new BinaryGoalRepository(new File(directory, "goals.bin"));
+			case "sql" -> new SqlGoalRepository(System.getProperty("goals.jdbcUrl",
+					"jdbc:sqlite:" + new File(directory, "goals.db").getAbsolutePath()));
+			default -> throw new Error("Unknown goals storage \"" + storage + "\"");
+		};
 	}
 
 	public static void save() {
-		saveGoals();
+		// flushing after catching up with the journal, so the file doesn't lose other instances' changes
+		journal.locked(repository::flush);
 	}
 
-	private static void loadGoals() {
-		byte[] data;
-		try {
-			data = Files.readAllBytes(Paths.get(goalsFile.toURI()));
-		} catch (Exception e) {
-			throw new Error("Failed to read the goals file (" + goalsFile.getAbsolutePath() + ")", e);
-		}
-		ByteBuffer buffer = ByteBuffer.wrap(data);
-		int version = buffer.getInt();
-		if (version != VERSION)
-			throw new Error("Incompatible goals file (running version " + VERSION + ", found " + version);
-
-		int goalsNumber = buffer.getInt();
-		goals = new ArrayList<>(goalsNumber);
-		for (int i = 0; i < goalsNumber; i++) {
-			int nameLength = buffer.getInt();
-			byte[] nameBytes = new byte[nameLength];
-			buffer.get(nameBytes);
-			String name = new String(nameBytes, StandardCharsets.UTF_8);
-			long initiatedAt = buffer.getLong();
-			byte isCompleted = buffer.get();
-			if (isCompleted != 0 && isCompleted != 1) throw new Error("isCompleted sign byte is neither 0 nor 1 ("
-					+ isCompleted + ") at byte " + (buffer.arrayOffset() - 1));
-			boolean isCompletedBool = isCompleted == 1;
-			long completedAt = 0;
-			if (isCompletedBool) completedAt = buffer.getLong();
-
-			Goal g = isCompletedBool ? new Goal(name, initiatedAt, completedAt) : new Goal(name, initiatedAt);
+	/**
+	 * Saves the goals and releases the storage; called when the app exits.
+	 */
+	public static void close() {
+		save();
+		repository.close();
+	}
+
+	public static GoalRepository getRepository() {
+		return repository;
+	}
+
+	public static History getHistory() {
+		return history;
+	}
+
+	public static Statistics getStatistics() {
+		return statistics;
+	}
+
+	public static Reminders getReminders() {
+		return reminders;
+	}
+
+	static void record(GoalEvent e) {
+		if (e.goalId == -1) return;
+		journal.locked(() -> {
+			Goal g = getGoal(e.goalId);
+			if (g == null) return; // removed by another instance in the meantime
+			// changes merged from other instances while taking the lock may have moved the version on;
+			// re-applying the event makes this change the latest one here, as it will be everywhere else
+			GoalEvent stamped = e.withVersion(g.version + 1);
+			if (e.type == GoalEvent.Type.ADDED || e.type == GoalEvent.Type.REMOVED) g.version = stamped.version;
+			else g.apply(stamped);
+
+			journal.append(stamped);
+			history.record(stamped);
+			statistics.apply(stamped);
+			reminders.onEvent(stamped);
+			if (e.type == GoalEvent.Type.REMOVED) repository.delete(e.goalId);
+			else repository.put(g);
+			modCount++;
+		});
+	}
+
+	public static void addGoal(Goal g) {
+		// holding the lock from the id choice to the journal entry keeps ids unique across instances
+		journal.locked(() -> {
+			g.id = Math.max(goalsById.size(), history.getMaxGoalId() + 1);
 			goals.add(g);
-		}
-		if (buffer.hasRemaining()) throw new Error("Leftover bytes after reading the whole file. Read "
-				+ buffer.position() + ", total " + data.length);
-	}
-
-	private static void saveGoals() {
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
-		ByteBuffer converter = ByteBuffer.allocate(8);
-		byte[] intByteArray = new byte[4];
-		// Version
-		converter.putInt(0, VERSION);
-		converter.get(0, intByteArray);
-		output.writeBytes(intByteArray);
-		// Goals number
-		converter.putInt(0, goals.size());
-		converter.get(0, intByteArray);
-		output.writeBytes(intByteArray);
-		// Goals loop
-		for (Goal g : goals) {
-			// Name
-			byte[] name = g.getName().getBytes(StandardCharsets.UTF_8);
-			converter.putInt(0, name.length);
-			converter.get(0, intByteArray);
-			output.writeBytes(intByteArray);
-			output.writeBytes(name);
-			// Initiated
-			converter.putLong(0, g.getInitiated());
-			output.writeBytes(converter.array());
-			// Is completed
-			output.write(g.isCompleted() ? 1 : 0);
-			// Completed
-			if (g.isCompleted()) {
-				converter.putLong(0, g.getCompleted());
-				output.writeBytes(converter.array());
+			register(g);
+			record(GoalEvent.added(g));
+		});
+		refilter();
+		recalculatePlacement();
+	}
+
+	public static void removeGoal(Goal g) {
+		record(GoalEvent.removed(g));
+		if (getGoal(g.id) != g) return; // already removed while merging another instance's changes
+		unregister(g);
+		refilter();
+		AppData.recalculatePlacement();
+	}
+
+	/**
+	 * Applies the events appended to the journal by other instances. Each goal carries a version that
+	 * grows with every mutation, so events the model has already seen (or has newer changes than) are
+	 * skipped, which also makes merging the same events twice harmless.
+	 */
+	private static void mergeForeignEvents(List<GoalEvent> events) {
+		boolean changed = false;
+		for (GoalEvent e : events) {
+			Goal local = getGoal(e.goalId);
+			switch (e.type) {
+				case ADDED -> {
+					if (local != null) continue;
+					Goal g = Goal.fromEvent(e);
+					goals.add(g);
+					register(g);
+				}
+				case REMOVED -> {
+					if (local == null || e.version <= local.version) continue;
+					unregister(local);
+				}
+				default -> {
+					if (local == null || e.version <= local.version) continue;
+					List<String> oldTags = local.getTags();
+					local.apply(e);
+					if (e.type == GoalEvent.Type.TAGS_CHANGED) tagIndex.retag(local, oldTags);
+				}
 			}
+			history.record(e);
+			statistics.apply(e);
+			reminders.onEvent(e);
+			if (e.type == GoalEvent.Type.REMOVED) repository.delete(e.goalId);
+			else repository.put(getGoal(e.goalId));
+			modCount++;
+			changed = true;
 		}
+		if (!changed) return;
+		refilter();
+		recalculatePlacement();
+	}
 
-		try {
-			Files.write(Paths.get(goalsFile.toURI()), output.toByteArray());
-		} catch (IOException e) {
-			throw new Error("Failed to save the goals file", e);
+	/**
+	 * Adopts the journal's state of the goals it has newer versions of, in case an instance appended
+	 * to it without saving the goals afterwards.
+	 */
+	private static void reconcileWithHistory() {
+		for (int id = 0; id <= Math.max(history.getMaxGoalId(), goalsById.size() - 1); id++) {
+			Goal latest = history.latest(id), local = getGoal(id);
+			if (latest == null && local != null && history.hasSeen(id)) {
+				unregister(local);
+				repository.delete(id);
+			} else if (latest != null && (local == null || latest.version > local.version)) {
+				if (local != null) unregister(local);
+				Goal g = latest.copy();
+				goals.add(g);
+				register(g);
+				repository.put(g);
+			}
 		}
 	}
 
-	public static void addGoal(Goal g) {
-		goals.add(g);
+	private static void unregister(Goal g) {
+		goals.remove(g);
+		tagIndex.remove(g);
+		goalsById.set(g.id, null);
+		g.releaseName(names);
+	}
+
+	private static void register(Goal g) {
+		if (g.id == -1) g.id = goalsById.size();
+		while (goalsById.size() <= g.id) goalsById.add(null);
+		if (goalsById.get(g.id) != null) throw new Error("Duplicate goal id " + g.id);
+		goalsById.set(g.id, g);
+		tagIndex.add(g);
+		g.internName(names);
+	}
+
+	static void onTagsChanged(Goal g, List<String> oldTags) {
+		tagIndex.retag(g, oldTags);
+		refilter();
 		recalculatePlacement();
 	}
 
-	public static void removeGoal(Goal g) {
-		goals.remove(g);
-		AppData.recalculatePlacement();
+	/**
+	 * Incremented on every change to the goals, including those merged from other instances.
+	 */
+	public static int getModCount() {
+		return modCount;
 	}
 
 	public static List<Goal> getGoals() {
 		return goals;
 	}
 
-	public static void recalculatePlacement() {
-		goals.sort(Comparator.comparingLong(Goal::getInitiated));
+	/**
+	 * @return the goal with the given id, or null if there's none
+	 */
+	public static Goal getGoal(int id) {
+		return id < goalsById.size() ? goalsById.get(id) : null;
+	}
 
-		for (Goal g : goals) {
+	/**
+	 * Goals passing the current tag filter, sorted by initiation.
+	 */
+	public static List<Goal> getShownGoals() {
+		return shownView.goals;
+	}
 
-			List<Goal> overlappingBefore = getOverlappingGoalsBefore(g);
-			if (overlappingBefore.isEmpty()) {
-				g.displayLevel = 0;
-				continue;
-			}
-			overlappingBefore.sort(Comparator.comparing(goal -> goal.displayLevel));
+	/**
+	 * @param g one of the {@link #getShownGoals() shown goals}
+	 * @return the level it's displayed on in the current view
+	 */
+	public static int getDisplayLevel(Goal g) {
+		return shownView.levels[g.id];
+	}
 
-			int lastListIndex = overlappingBefore.size() - 1;
-			if (overlappingBefore.get(lastListIndex).displayLevel == lastListIndex) {
-				// All level are occupied; take the next available one.
-				g.displayLevel = lastListIndex + 1;
-				continue;
-			}
+	public static NamePool getNames() {
+		return names;
+	}
+
+	public static Set<String> getTags() {
+		return tagIndex.getTags();
+	}
+
+	public static String getFilter() {
+		return filter;
+	}
 
-			for (int i = 0; i < overlappingBefore.size(); i++) {
-				if (i != overlappingBefore.get(i).displayLevel) {
-					g.displayLevel = i;
-					break;
+	/**
+	 * @param expression tag expression as understood by {@link TagFilter}, or null to show all goals
+	 */
+	public static void setFilter(String expression) {
+		if (expression != null && expression.isBlank()) expression = null;
+		RoaringBitmap ids = expression == null ? null : TagFilter.evaluate(expression, tagIndex);
+		filter = expression;
+		shownIds = ids;
+		showFiltered();
+	}
+
+	private static void refilter() {
+		if (filter != null) shownIds = TagFilter.evaluate(filter, tagIndex);
+	}
+
+	/**
+	 * Re-sorts the goals and places the shown ones; called after any change to the goals. The goals stay
+	 * nearly sorted between calls, which the sort handles in linear time.
+	 */
+	public static void recalculatePlacement() {
+		goals.sort(Comparator.comparingLong(Goal::getInitiated));
+		filteredViews.clear();
+		showFiltered();
+	}
+
+	private static void showFiltered() {
+		shownView = filteredViews.computeIfAbsent(filter, f -> {
+			List<Goal> shown = goals;
+			if (shownIds != null) {
+				// picked from the sorted goals rather than sorted again
+				shown = new ArrayList<>(shownIds.cardinality());
+				for (Goal g : goals) {
+					if (shownIds.contains(g.id)) shown.add(g);
 				}
 			}
-		}
+			int[] placed = place(shown), levels = new int[goalsById.size()];
+			for (int i = 0; i < placed.length; i++) levels[shown.get(i).id] = placed[i];
+			return new View(shown, levels);
+		});
 	}
 
-	public static List<Goal> getOverlappingGoalsBefore(Goal g) {
-		int index = goals.indexOf(g);
-		if (index == -1) throw new IllegalArgumentException("Unlisted goal");
-		List<Goal> result = new ArrayList<>();
-		for (int i = 0; i < index; i++) {
-			Goal gi = goals.get(i);
-			if (gi.isCompleted()) {
-				if (gi.getCompleted() > g.getInitiated()) result.add(gi);
-			} else {
-				result.add(gi);
+	/**
+	 * Assigns display levels to goals sorted by initiation so that overlapping ones don't share a level.
+	 * Every goal takes the lowest level not held by an earlier goal still open at its initiation.
+	 *
+	 * @return the levels, in the order of the goals
+	 */
+	public static int[] place(List<Goal> sortedGoals) {
+		int[] result = new int[sortedGoals.size()];
+		// binary heaps of the completed goals holding a level, by completion (open goals hold theirs for good),
+		// and of the levels below the highest one used that were released
+		long[] busyUntil = new long[16];
+		int[] busyLevels = new int[16], free = new int[16];
+		int busy = 0, freeNumber = 0, levels = 0;
+		for (int i = 0; i < result.length; i++) {
+			Goal g = sortedGoals.get(i);
+			while (busy > 0 && busyUntil[0] <= g.getInitiated()) {
+				if (freeNumber == free.length) free = Arrays.copyOf(free, freeNumber * 2);
+				free[freeNumber] = busyLevels[0];
+				siftUp(free, freeNumber++);
+				busy--;
+				busyUntil[0] = busyUntil[busy];
+				busyLevels[0] = busyLevels[busy];
+				siftDown(busyUntil, busyLevels, busy);
+			}
+			if (freeNumber == 0) result[i] = levels++;
+			else {
+				result[i] = free[0];
+				free[0] = free[--freeNumber];
+				siftDown(free, freeNumber);
+			}
+			if (!g.isCompleted()) continue;
+			if (busy == busyUntil.length) {
+				busyUntil = Arrays.copyOf(busyUntil, busy * 2);
+				busyLevels = Arrays.copyOf(busyLevels, busy * 2);
+			}
+			busyUntil[busy] = g.getCompleted();
+			busyLevels[busy] = result[i];
+			for (int j = busy++; j > 0 && busyUntil[(j - 1) / 2] > busyUntil[j]; j = (j - 1) / 2) {
+				swap(busyUntil, busyLevels, j, (j - 1) / 2);
 			}
 		}
 		return result;
 	}
+
+	private static void siftUp(int[] heap, int i) {
+		for (; i > 0 && heap[(i - 1) / 2] > heap[i]; i = (i - 1) / 2) {
+			int parent = heap[(i - 1) / 2];
+			heap[(i - 1) / 2] = heap[i];
+			heap[i] = parent;
+		}
+	}
+
+	private static void siftDown(int[] heap, int size) {
+		for (int i = 0; ; ) {
+			int smallest = i, left = 2 * i + 1, right = left + 1;
+			if (left < size && heap[left] < heap[smallest]) smallest = left;
+			if (right < size && heap[right] < heap[smallest]) smallest = right;
+			if (smallest == i) return;
+			int t = heap[i];
+			heap[i] = heap[smallest];
+			heap[smallest] = t;
+			i = smallest;
+		}
+	}
+
+	private static void siftDown(long[] keys, int[] values, int size) {
+		for (int i = 0; ; ) {
+			int smallest = i, left = 2 * i + 1, right = left + 1;
+			if (left < size && keys[left] < keys[smallest]) smallest = left;
+			if (right < size && keys[right] < keys[smallest]) smallest = right;
+			if (smallest == i) return;
+			swap(keys, values, i, smallest);
+			i = smallest;
+		}
+	}
+
+	private static void swap(long[] keys, int[] values, int i, int j) {
+		long key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		int value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+	}
+
+	/**
+	 * Shown goals sorted by initiation, with their levels by goal id.
+	 */
+	private record View(List<Goal> goals, int[] levels) {
+	}
 }
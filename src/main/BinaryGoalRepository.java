@@ -0,0 +1,342 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The goals.bin format. Since version 6 names and tags are stored once in a table of strings preceding the
+ * goals, which refer to them by index. The file is kept in memory as read or last written, with an index of
+ * its records, and goals are decoded from it when asked for; goals put since are kept aside until
+ * {@link #flush()} rewrites the file with them.
+ */
+public class BinaryGoalRepository implements GoalRepository {
+	private static final int VERSION = 6;
+	// the order of the records
+	private static final Comparator<Goal> BY_KEY = Comparator.comparingLong(Goal::getInitiated).thenComparingInt(Goal::getId);
+
+	private final File goalsFile;
+	private ByteBuffer data; // in the current version, even if the file is still in an older one
+	private String[] strings = new String[0];
+	// the records of data sorted by initiation and then id, with their ends (open goals never end)
+	private int[] offsets = new int[0], ids = new int[0];
+	private long[] initiated = new long[0], ends = new long[0];
+	private int[] recordsById = new int[0]; // index in offsets, or -1
+	// copies of the goals put since data was written, and null for those deleted
+	private final Map<Integer, Goal> changed = new HashMap<>();
+	private boolean modified;
+
+	public BinaryGoalRepository(File goalsFile) {
+		if (goalsFile.isDirectory()) throw new Error(goalsFile.getAbsolutePath() + " is occupied by a directory");
+		this.goalsFile = goalsFile;
+		if (goalsFile.exists()) read();
+	}
+
+	@Override
+	public synchronized List<Goal> loadAll() {
+		List<Goal> result = new ArrayList<>(offsets.length + changed.size());
+		for (int i = 0; i < offsets.length; i++) {
+			if (!changed.containsKey(ids[i])) result.add(decode(i));
+		}
+		for (Goal g : changed.values()) {
+			if (g != null) result.add(g.copy());
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized List<Goal> findInRange(long start, long end, Goal after, int limit) {
+		List<Goal> result = new ArrayList<>();
+		int i = 0;
+		if (after != null) {
+			// the first record past the previous page's last goal
+			int low = 0, high = offsets.length;
+			while (low < high) {
+				int middle = (low + high) >>> 1;
+				if (initiated[middle] < after.getInitiated()
+						|| initiated[middle] == after.getInitiated() && ids[middle] <= after.getId()) low = middle + 1;
+				else high = middle;
+			}
+			i = low;
+		}
+		for (; i < offsets.length && initiated[i] <= end && result.size() < limit; i++) {
+			if (ends[i] >= start && !changed.containsKey(ids[i])) result.add(decode(i));
+		}
+		for (Goal g : changed.values()) {
+			if (g == null || g.getInitiated() > end || g.isCompleted() && g.getCompleted() < start) continue;
+			if (after == null || BY_KEY.compare(g, after) > 0) result.add(g.copy());
+		}
+		result.sort(BY_KEY);
+		return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+	}
+
+	@Override
+	public synchronized Goal findById(int id) {
+		if (changed.containsKey(id)) {
+			Goal g = changed.get(id);
+			return g == null ? null : g.copy();
+		}
+		return id >= 0 && id < recordsById.length && recordsById[id] != -1 ? decode(recordsById[id]) : null;
+	}
+
+	@Override
+	public synchronized void put(Goal g) {
+		changed.put(g.getId(), g.copy());
+		modified = true;
+	}
+
+	@Override
+	public synchronized void delete(int id) {
+		boolean stored = id >= 0 && id < recordsById.length && recordsById[id] != -1;
+		if (stored) changed.put(id, null);
+		else if (changed.remove(id) == null) return;
+		modified = true;
+	}
+
+	@Override
+	public synchronized void flush() {
+		if (!modified) return;
+		List<Goal> goals = loadAll();
+		goals.sort(BY_KEY);
+		byte[] bytes = write(goals);
+		try {
+			Files.write(Paths.get(goalsFile.toURI()), bytes);
+		} catch (IOException e) {
+			throw new Error("Failed to save the goals file", e);
+		}
+		changed.clear();
+		index(bytes);
+		modified = false;
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+	private void read() {
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(Paths.get(goalsFile.toURI()));
+		} catch (Exception e) {
+			throw new Error("Failed to read the goals file (" + goalsFile.getAbsolutePath() + ")", e);
+		}
+		int version = ByteBuffer.wrap(bytes).getInt();
+		if (version < 1 || version > VERSION)
+			throw new Error("Incompatible goals file (running version " + VERSION + ", found " + version);
+		if (version < VERSION) {
+			// converted in memory, and the file is upgraded on the next flush
+			List<Goal> goals = readGoals(ByteBuffer.wrap(bytes), version);
+			goals.sort(BY_KEY);
+			bytes = write(goals);
+			modified = true;
+		}
+		index(bytes);
+	}
+
+	/**
+	 * Replaces data with the given contents of a file in the current version and indexes its records.
+	 */
+	private void index(byte[] bytes) {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.getInt();
+		strings = new String[buffer.getInt()];
+		for (int i = 0; i < strings.length; i++) strings[i] = readString(buffer);
+
+		int goalsNumber = buffer.getInt();
+		offsets = new int[goalsNumber];
+		ids = new int[goalsNumber];
+		initiated = new long[goalsNumber];
+		ends = new long[goalsNumber];
+		boolean sorted = true;
+		int maxId = -1;
+		for (int i = 0; i < goalsNumber; i++) {
+			offsets[i] = buffer.position();
+			Goal g = readGoal(buffer, VERSION);
+			ids[i] = g.getId();
+			initiated[i] = g.getInitiated();
+			ends[i] = g.isCompleted() ? g.getCompleted() : Long.MAX_VALUE;
+			maxId = Math.max(maxId, ids[i]);
+			if (i > 0 && (initiated[i - 1] > initiated[i] || initiated[i - 1] == initiated[i] && ids[i - 1] > ids[i]))
+				sorted = false;
+		}
+		if (buffer.hasRemaining()) throw new Error("Leftover bytes after reading the whole file. Read "
+				+ buffer.position() + ", total " + bytes.length);
+		if (!sorted) sortRecords(); // files are written in order, but before version 6 only by initiation
+		data = buffer;
+
+		recordsById = new int[maxId + 1];
+		Arrays.fill(recordsById, -1);
+		for (int i = 0; i < goalsNumber; i++) recordsById[ids[i]] = i;
+	}
+
+	private void sortRecords() {
+		Integer[] order = new Integer[offsets.length];
+		for (int i = 0; i < order.length; i++) order[i] = i;
+		long[] initiated = this.initiated;
+		int[] ids = this.ids;
+		Arrays.sort(order, (a, b) -> initiated[a] != initiated[b] ? Long.compare(initiated[a], initiated[b])
+				: Integer.compare(ids[a], ids[b]));
+		int[] offsets = new int[order.length];
+		this.ids = new int[order.length];
+		this.initiated = new long[order.length];
+		long[] ends = new long[order.length];
+		for (int i = 0; i < order.length; i++) {
+			offsets[i] = this.offsets[order[i]];
+			this.ids[i] = ids[order[i]];
+			this.initiated[i] = initiated[order[i]];
+			ends[i] = this.ends[order[i]];
+		}
+		this.offsets = offsets;
+		this.ends = ends;
+	}
+
+	private Goal decode(int record) {
+		return readGoal(data.duplicate().position(offsets[record]), VERSION);
+	}
+
+	/**
+	 * Reads a whole file of the given version, which may be older than the current one.
+	 */
+	private List<Goal> readGoals(ByteBuffer buffer, int version) {
+		buffer.getInt();
+		strings = new String[version >= 6 ? buffer.getInt() : 0];
+		for (int i = 0; i < strings.length; i++) strings[i] = readString(buffer);
+
+		int goalsNumber = buffer.getInt();
+		List<Goal> goals = new ArrayList<>(goalsNumber);
+		for (int i = 0; i < goalsNumber; i++) {
+			Goal g = readGoal(buffer, version);
+			if (version < 3) g.id = i;
+			goals.add(g);
+		}
+		if (buffer.hasRemaining()) throw new Error("Leftover bytes after reading the whole file. Read "
+				+ buffer.position() + ", total " + buffer.limit());
+		return goals;
+	}
+
+	/**
+	 * Reads the record at the buffer's position, with names and tags referring to strings since version 6.
+	 */
+	private Goal readGoal(ByteBuffer buffer, int version) {
+		int id = version >= 3 ? buffer.getInt() : -1;
+		int goalVersion = version >= 4 ? buffer.getInt() : 0;
+		String name = version >= 6 ? strings[buffer.getInt()] : readString(buffer);
+		long initiatedAt = buffer.getLong();
+		byte isCompleted = buffer.get();
+		if (isCompleted != 0 && isCompleted != 1) throw new Error("isCompleted sign byte is neither 0 nor 1 ("
+				+ isCompleted + ") at byte " + (buffer.position() - 1));
+		boolean isCompletedBool = isCompleted == 1;
+		long completedAt = 0;
+		if (isCompletedBool) completedAt = buffer.getLong();
+
+		Goal g = isCompletedBool ? new Goal(name, initiatedAt, completedAt) : new Goal(name, initiatedAt);
+		if (version >= 2) {
+			int tagsNumber = buffer.getInt();
+			List<String> tags = new ArrayList<>(tagsNumber);
+			for (int j = 0; j < tagsNumber; j++) tags.add(version >= 6 ? strings[buffer.getInt()] : readString(buffer));
+			g.tags = Collections.unmodifiableList(tags);
+		}
+		if (version >= 5) {
+			byte hasDeadline = buffer.get();
+			if (hasDeadline != 0 && hasDeadline != 1) throw new Error("hasDeadline sign byte is neither 0 nor 1 ("
+					+ hasDeadline + ") at byte " + (buffer.position() - 1));
+			if (hasDeadline == 1) {
+				g.deadline = buffer.getLong();
+				g.hasDeadline = true;
+			}
+		}
+		g.id = id;
+		g.version = goalVersion;
+		return g;
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static byte[] write(List<Goal> goals) {
+		Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+		for (Goal g : goals) {
+			stringIndexes.putIfAbsent(g.getName(), stringIndexes.size());
+			for (String tag : g.getTags()) stringIndexes.putIfAbsent(tag, stringIndexes.size());
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ByteBuffer converter = ByteBuffer.allocate(8);
+		byte[] intByteArray = new byte[4];
+		// Version
+		converter.putInt(0, VERSION);
+		converter.get(0, intByteArray);
+		output.writeBytes(intByteArray);
+		// Strings
+		converter.putInt(0, stringIndexes.size());
+		converter.get(0, intByteArray);
+		output.writeBytes(intByteArray);
+		for (String string : stringIndexes.keySet()) {
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			converter.putInt(0, bytes.length);
+			converter.get(0, intByteArray);
+			output.writeBytes(intByteArray);
+			output.writeBytes(bytes);
+		}
+		// Goals number
+		converter.putInt(0, goals.size());
+		converter.get(0, intByteArray);
+		output.writeBytes(intByteArray);
+		// Goals loop
+		for (Goal g : goals) {
+			// Id
+			converter.putInt(0, g.getId());
+			converter.get(0, intByteArray);
+			output.writeBytes(intByteArray);
+			// Version
+			converter.putInt(0, g.getVersion());
+			converter.get(0, intByteArray);
+			output.writeBytes(intByteArray);
+			// Name
+			converter.putInt(0, stringIndexes.get(g.getName()));
+			converter.get(0, intByteArray);
+			output.writeBytes(intByteArray);
+			// Initiated
+			converter.putLong(0, g.getInitiated());
+			output.writeBytes(converter.array());
+			// Is completed
+			output.write(g.isCompleted() ? 1 : 0);
+			// Completed
+			if (g.isCompleted()) {
+				converter.putLong(0, g.getCompleted());
+				output.writeBytes(converter.array());
+			}
+			// Tags
+			converter.putInt(0, g.getTags().size());
+			converter.get(0, intByteArray);
+			output.writeBytes(intByteArray);
+			for (String tag : g.getTags()) {
+				converter.putInt(0, stringIndexes.get(tag));
+				converter.get(0, intByteArray);
+				output.writeBytes(intByteArray);
+			}
+			// Deadline
+			output.write(g.hasDeadline() ? 1 : 0);
+			if (g.hasDeadline()) {
+				converter.putLong(0, g.getDeadline());
+				output.writeBytes(converter.array());
+			}
+		}
+		return output.toByteArray();
+	}
+}
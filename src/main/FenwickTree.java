@@ -0,0 +1,45 @@
+package main;
+
+/**
+ * Binary indexed tree of longs: point updates and prefix/range sums in O(log n).
+ */
+public class FenwickTree {
+	private final long[] tree;
+
+	public FenwickTree(int size) {
+		tree = new long[size + 1];
+	}
+
+	private FenwickTree(long[] tree) {
+		this.tree = tree;
+	}
+
+	public FenwickTree copy() {
+		return new FenwickTree(tree.clone());
+	}
+
+	public int size() {
+		return tree.length - 1;
+	}
+
+	public void add(int index, long delta) {
+		for (int i = index + 1; i < tree.length; i += i & -i) tree[i] += delta;
+	}
+
+	/**
+	 * @return sum of the values at indexes [0, index]
+	 */
+	public long prefixSum(int index) {
+		long sum = 0;
+		for (int i = Math.min(index + 1, tree.length - 1); i > 0; i -= i & -i) sum += tree[i];
+		return sum;
+	}
+
+	/**
+	 * @return sum of the values at indexes [from, to]
+	 */
+	public long rangeSum(int from, int to) {
+		if (to < from) return 0;
+		return prefixSum(to) - prefixSum(from - 1);
+	}
+}
@@ -1,11 +1,23 @@
 package main;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class Goal {
+	int id = -1;
+	int version;
 	private String name;
+	int nameId = -1; // while the goal is in AppData, see NamePool
 	private long initiated;
 	private long completed;
 	private boolean isCompleted;
-	public int displayLevel;
+	// assigned directly when loading, so stored states that the setters would reject still load
+	long deadline;
+	boolean hasDeadline;
+	List<String> tags = List.of(); // unmodifiable
+	public int displayLevel; // of detached copies only; the live goals' levels are in AppData
+	boolean overdue; // maintained by Reminders
 
 	public Goal(String name, long initiated, long completed) {
 		this.name = name;
@@ -23,6 +35,7 @@ public class Goal {
 		if (isCompleted) throw new IllegalStateException("Already completed");
 		completed = System.currentTimeMillis();
 		isCompleted = true;
+		AppData.record(GoalEvent.completed(this));
 		AppData.recalculatePlacement();
 	}
 
@@ -34,6 +47,7 @@ public class Goal {
 
 		completed = at;
 		isCompleted = true;
+		AppData.record(GoalEvent.completed(this));
 		AppData.recalculatePlacement();
 	}
 
@@ -41,25 +55,159 @@ public class Goal {
 		if (!isCompleted) throw new IllegalStateException("Not completed to be cancelled");
 		isCompleted = false;
 		completed = 0;
+		AppData.record(GoalEvent.completionCancelled(this));
 		AppData.recalculatePlacement();
 	}
 
 	public void setInitiated(long at) {
 		if (isCompleted && at > completed) throw new IllegalArgumentException("Cannot start after the end");
+		if (hasDeadline && at >= deadline) throw new IllegalArgumentException("Cannot start after the deadline");
 		if (at > System.currentTimeMillis())
 			throw new IllegalArgumentException("Cannot start in the point in the future");
 		initiated = at;
+		AppData.record(GoalEvent.initiatedChanged(this));
 		AppData.recalculatePlacement();
 	}
 
+	public void setDeadline(long at) {
+		if (at <= initiated) throw new IllegalArgumentException("Cannot set the deadline before the start");
+		deadline = at;
+		hasDeadline = true;
+		AppData.record(GoalEvent.deadlineSet(this));
+	}
+
+	public void clearDeadline() {
+		if (!hasDeadline) throw new IllegalStateException("No deadline to be cleared");
+		hasDeadline = false;
+		deadline = 0;
+		AppData.record(GoalEvent.deadlineCleared(this));
+	}
+
 	public void setName(String name) {
-		this.name = name;
+		changeName(name);
+		AppData.record(GoalEvent.renamed(this));
+	}
+
+	public void setTags(List<String> tags) {
+		List<String> cleaned = new ArrayList<>();
+		for (String tag : tags) {
+			if (tag.isEmpty()) continue;
+			for (int i = 0; i < tag.length(); i++) {
+				if (!TagFilter.isTagChar(tag.charAt(i)))
+					throw new IllegalArgumentException("Tag \"" + tag + "\" contains an illegal character");
+			}
+			if (!cleaned.contains(tag)) cleaned.add(tag);
+		}
+		List<String> oldTags = this.tags;
+		this.tags = Collections.unmodifiableList(cleaned);
+		if (id != -1) {
+			AppData.record(GoalEvent.tagsChanged(this));
+			AppData.onTagsChanged(this, oldTags);
+		}
+	}
+
+	/**
+	 * Replays an event onto this goal without notifying {@link AppData}; used for historic states.
+	 */
+	void apply(GoalEvent e) {
+		version = e.version;
+		switch (e.type) {
+			case COMPLETED -> {
+				completed = e.value;
+				isCompleted = true;
+			}
+			case COMPLETION_CANCELLED -> {
+				completed = 0;
+				isCompleted = false;
+			}
+			case INITIATED_CHANGED -> initiated = e.value;
+			case RENAMED -> changeName(e.text);
+			case TAGS_CHANGED -> tags = e.tags;
+			case DEADLINE_SET -> {
+				deadline = e.value;
+				hasDeadline = true;
+			}
+			case DEADLINE_CLEARED -> {
+				deadline = 0;
+				hasDeadline = false;
+			}
+			default -> throw new IllegalArgumentException("Cannot apply " + e.type + " to an existing goal");
+		}
+	}
+
+	private void changeName(String name) {
+		if (nameId == -1) {
+			this.name = name;
+			return;
+		}
+		NamePool pool = AppData.getNames();
+		int id = pool.acquire(name); // before releasing the old one, in case it's the same
+		pool.release(nameId);
+		nameId = id;
+		this.name = pool.get(id);
+	}
+
+	/**
+	 * Makes the goal share the pooled instance of its name, counting a reference to it.
+	 */
+	void internName(NamePool pool) {
+		nameId = pool.acquire(name);
+		name = pool.get(nameId);
+	}
+
+	void releaseName(NamePool pool) {
+		if (nameId == -1) return;
+		pool.release(nameId);
+		nameId = -1;
+	}
+
+	static Goal fromEvent(GoalEvent e) {
+		if (e.type != GoalEvent.Type.ADDED) throw new IllegalArgumentException("Not an addition event");
+		Goal g = new Goal(e.text, e.value);
+		g.id = e.goalId;
+		g.version = e.version;
+		g.tags = e.tags;
+		return g;
+	}
+
+	Goal copy() {
+		Goal g = isCompleted ? new Goal(name, initiated, completed) : new Goal(name, initiated);
+		g.id = id;
+		g.version = version;
+		g.tags = tags;
+		g.deadline = deadline;
+		g.hasDeadline = hasDeadline;
+		g.overdue = overdue;
+		return g;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Number of mutations the goal went through; used to merge changes made by other instances.
+	 */
+	public int getVersion() {
+		return version;
+	}
+
+	public List<String> getTags() {
+		return tags;
 	}
 
 	public String getName() {
 		return name;
 	}
 
+	/**
+	 * Equal for live goals with equal names, so they can be grouped without comparing strings; -1 for goals
+	 * that aren't in {@link AppData}.
+	 */
+	public int getNameId() {
+		return nameId;
+	}
+
 	public long getInitiated() {
 		return initiated;
 	}
@@ -71,4 +219,19 @@ public class Goal {
 	public boolean isCompleted() {
 		return isCompleted;
 	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public boolean hasDeadline() {
+		return hasDeadline;
+	}
+
+	/**
+	 * @return whether the deadline has passed with the goal not completed
+	 */
+	public boolean isOverdue() {
+		return overdue;
+	}
 }
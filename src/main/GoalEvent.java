@@ -0,0 +1,81 @@
+package main;
+
+import java.util.List;
+
+/**
+ * A single mutation of the goals model, as recorded by {@link History}. {@code version} is the version
+ * the goal has after the mutation; see {@link Goal#getVersion()}.
+ */
+public class GoalEvent {
+	// the ordinals are stored in the journal, new types go to the end
+	public enum Type {
+		ADDED, REMOVED, COMPLETED, COMPLETION_CANCELLED, INITIATED_CHANGED, RENAMED, TAGS_CHANGED, DEADLINE_SET,
+		DEADLINE_CLEARED
+	}
+
+	public final Type type;
+	public final long timestamp;
+	public final int goalId;
+	public final int version;
+	public final long value;
+	public final String text;
+	public final List<String> tags;
+
+	public GoalEvent(Type type, long timestamp, int goalId, int version, long value, String text, List<String> tags) {
+		this.type = type;
+		this.timestamp = timestamp;
+		this.goalId = goalId;
+		this.version = version;
+		this.value = value;
+		this.text = text;
+		this.tags = tags;
+	}
+
+	public static GoalEvent added(Goal g) {
+		return of(Type.ADDED, g, g.getInitiated(), g.getName(), g.getTags());
+	}
+
+	public static GoalEvent removed(Goal g) {
+		return of(Type.REMOVED, g, 0, null, null);
+	}
+
+	public static GoalEvent completed(Goal g) {
+		return of(Type.COMPLETED, g, g.getCompleted(), null, null);
+	}
+
+	public static GoalEvent completionCancelled(Goal g) {
+		return of(Type.COMPLETION_CANCELLED, g, 0, null, null);
+	}
+
+	public static GoalEvent initiatedChanged(Goal g) {
+		return of(Type.INITIATED_CHANGED, g, g.getInitiated(), null, null);
+	}
+
+	public static GoalEvent renamed(Goal g) {
+		return of(Type.RENAMED, g, 0, g.getName(), null);
+	}
+
+	public static GoalEvent tagsChanged(Goal g) {
+		return of(Type.TAGS_CHANGED, g, 0, null, g.getTags());
+	}
+
+	public static GoalEvent deadlineSet(Goal g) {
+		return of(Type.DEADLINE_SET, g, g.getDeadline(), null, null);
+	}
+
+	public static GoalEvent deadlineCleared(Goal g) {
+		return of(Type.DEADLINE_CLEARED, g, 0, null, null);
+	}
+
+	private static GoalEvent of(Type type, Goal g, long value, String text, List<String> tags) {
+		return new GoalEvent(type, System.currentTimeMillis(), g.getId(), g.getVersion() + 1, value, text, tags);
+	}
+
+	public GoalEvent withTimestamp(long timestamp) {
+		return new GoalEvent(type, timestamp, goalId, version, value, text, tags);
+	}
+
+	public GoalEvent withVersion(int version) {
+		return new GoalEvent(type, timestamp, goalId, version, value, text, tags);
+	}
+}
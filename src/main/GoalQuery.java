@@ -0,0 +1,507 @@
+package main;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.format.TextStyle;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Ad hoc questions about the goals, like
+ * {@code where name contains "gym" and weekday(started) in (sat, sun) and year(started) = 2025
+ * group by month(started) select count, avg(duration)}. Every part is optional:
+ * <ul>
+ * <li>{@code where} takes conditions combined with {@code and}, {@code or}, {@code not} and parentheses:
+ * {@code open}, {@code completed}, {@code overdue}, {@code name contains/=/!= "text"},
+ * {@code tag =/!= name}, or a comparison ({@code = != < <= > >=}, or {@code in (...)}) of a value with
+ * dates ({@code 2025-03-01}), durations ({@code 3d}, units s m h d w), numbers, or weekday and month names.</li>
+ * <li>{@code group by} takes values and {@code name} or {@code status}.</li>
+ * <li>{@code select} takes {@code count} and {@code avg}, {@code min}, {@code max} or {@code sum} of values.</li>
+ * </ul>
+ * Values are {@code started}, {@code completed}, {@code deadline}, {@code duration} (up to now for open
+ * goals), and {@code year}, {@code month}, {@code day}, {@code weekday} or {@code hour} of a moment.
+ * The query compiles to predicates and key functions over a column-wise copy of the goals, which is
+ * scanned by a parallel stream.
+ */
+public class GoalQuery {
+	private static final long MISSING = Long.MIN_VALUE; // the completion of open goals and such
+
+	private enum Kind {MOMENT, DURATION, NUMBER, MONTH, WEEKDAY, NAME, STATUS}
+
+	private record Value(String name, Kind kind, IntToLongFunction function) {
+	}
+
+	private record Aggregate(String function, Value value) {
+	}
+
+	private record GroupKey(long[] values) {
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof GroupKey k && Arrays.equals(values, k.values);
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(values);
+		}
+	}
+
+	/**
+	 * Rows of formatted cells, sorted by the groups.
+	 */
+	public record Result(List<String> columns, List<List<String>> rows, int matched, long elapsedNanos) {
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(String.join("\t", columns)).append('\n');
+			for (List<String> row : rows) sb.append(String.join("\t", row)).append('\n');
+			return sb.append(matched).append(" goals matched in ").append(elapsedNanos / 1000_000).append(" ms").toString();
+		}
+	}
+
+	private final String query;
+	private int position;
+	private Table table;
+
+	private IntPredicate condition = row -> true;
+	private final List<Value> keys = new ArrayList<>();
+	private final List<Aggregate> aggregates = new ArrayList<>();
+
+	private GoalQuery(String query) {
+		this.query = query;
+	}
+
+	/**
+	 * Parses and runs the query over the given goals, which must be in {@link AppData}.
+	 */
+	public static Result run(String query, List<Goal> goals) {
+		long start = System.nanoTime();
+		GoalQuery q = new GoalQuery(query);
+		q.table = new Table(goals);
+		q.parse();
+		return q.execute(start);
+	}
+
+	/**
+	 * @param date like 2025-03-01
+	 * @return the start of the day in the default time zone
+	 * @throws DateTimeParseException if the date is invalid
+	 */
+	static long parseDate(String date) {
+		return LocalDate.parse(date).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+	}
+
+	private void parse() {
+		if (consumeWord("where")) condition = parseOr();
+		if (consumeWord("group")) {
+			if (!consumeWord("by")) throw new IllegalArgumentException("Expected 'by' at " + position);
+			do keys.add(parseKey()); while (consume(","));
+		}
+		if (consumeWord("select")) {
+			do aggregates.add(parseAggregate()); while (consume(","));
+		} else aggregates.add(new Aggregate("count", null));
+		skipSpaces();
+		if (position != query.length())
+			throw new IllegalArgumentException("Unexpected '" + query.charAt(position) + "' at " + position);
+	}
+
+	private Result execute(long start) {
+		int keysNumber = keys.size(), aggregatesNumber = aggregates.size();
+		IntToLongFunction[] keyFunctions = keys.stream().map(Value::function).toArray(IntToLongFunction[]::new);
+		IntToLongFunction[] valueFunctions = aggregates.stream()
+				.map(a -> a.value() == null ? (IntToLongFunction) row -> 0 : a.value().function())
+				.toArray(IntToLongFunction[]::new);
+		IntPredicate condition = this.condition;
+
+		Map<GroupKey, Accumulator> groups = IntStream.range(0, table.size).parallel().filter(condition).collect(HashMap::new,
+				(map, row) -> {
+					long[] key = new long[keysNumber];
+					for (int i = 0; i < keysNumber; i++) key[i] = keyFunctions[i].applyAsLong(row);
+					map.computeIfAbsent(new GroupKey(key), k -> new Accumulator(aggregatesNumber)).add(row, valueFunctions);
+				}, (a, b) -> b.forEach((key, accumulator) -> a.merge(key, accumulator, Accumulator::merge)));
+
+		List<String> columns = new ArrayList<>();
+		keys.forEach(k -> columns.add(k.name()));
+		aggregates.forEach(a -> columns.add(a.value() == null ? a.function() : a.function() + "(" + a.value().name() + ")"));
+
+		List<Map.Entry<GroupKey, Accumulator>> entries = new ArrayList<>(groups.entrySet());
+		entries.sort((a, b) -> Arrays.compare(a.getKey().values, b.getKey().values));
+		List<List<String>> rows = new ArrayList<>();
+		int matched = 0;
+		for (Map.Entry<GroupKey, Accumulator> e : entries) {
+			List<String> row = new ArrayList<>();
+			for (int i = 0; i < keysNumber; i++) row.add(format(keys.get(i).kind(), e.getKey().values[i]));
+			Accumulator accumulator = e.getValue();
+			for (int i = 0; i < aggregatesNumber; i++) row.add(formatAggregate(accumulator, i));
+			rows.add(row);
+			matched += accumulator.count;
+		}
+		return new Result(columns, rows, matched, System.nanoTime() - start);
+	}
+
+	private IntPredicate parseOr() {
+		IntPredicate result = parseAnd();
+		while (consumeWord("or")) result = result.or(parseAnd());
+		return result;
+	}
+
+	private IntPredicate parseAnd() {
+		IntPredicate result = parseNot();
+		while (consumeWord("and")) result = result.and(parseNot());
+		return result;
+	}
+
+	private IntPredicate parseNot() {
+		if (consumeWord("not")) return parseNot().negate();
+		if (consume("(")) {
+			IntPredicate result = parseOr();
+			if (!consume(")")) throw new IllegalArgumentException("Missing ')' at " + position);
+			return result;
+		}
+		return parsePredicate();
+	}
+
+	private IntPredicate parsePredicate() {
+		Table t = table;
+		int start = position;
+		if (consumeWord("name")) {
+			if (consumeWord("contains")) {
+				String part = parseString().toLowerCase(Locale.ROOT);
+				// names are pooled, so every distinct one is only searched once
+				Map<Integer, Boolean> matches = new HashMap<>();
+				for (int row = 0; row < t.size; row++)
+					matches.computeIfAbsent(t.nameIds[row], id -> t.names[id].toLowerCase(Locale.ROOT).contains(part));
+				boolean[] byNameId = new boolean[t.names.length];
+				matches.forEach((id, match) -> byNameId[id] = match);
+				return row -> byNameId[t.nameIds[row]];
+			}
+			boolean equal = parseEquality();
+			int nameId = Arrays.asList(t.names).indexOf(parseString());
+			return row -> (t.nameIds[row] == nameId) == equal;
+		}
+		if (consumeWord("tag")) {
+			boolean equal = parseEquality();
+			String tag = peek() == '"' || peek() == '\'' ? parseString() : parseWord();
+			return row -> t.tags[row].contains(tag) == equal;
+		}
+		if (consumeWord("open")) return row -> t.completed[row] == MISSING;
+		if (consumeWord("overdue")) return row -> t.overdue[row];
+		if (consumeWord("completed") && !isComparisonNext()) return row -> t.completed[row] != MISSING;
+		position = start;
+
+		Value value = parseValue();
+		if (value.kind() == Kind.NAME || value.kind() == Kind.STATUS)
+			throw new IllegalArgumentException("Expected a value to compare at " + start);
+		IntToLongFunction f = value.function();
+		if (consumeWord("in")) {
+			if (!consume("(")) throw new IllegalArgumentException("Expected '(' at " + position);
+			List<Long> options = new ArrayList<>();
+			do options.add(parseLiteral(value.kind())); while (consume(","));
+			if (!consume(")")) throw new IllegalArgumentException("Missing ')' at " + position);
+			long[] set = options.stream().mapToLong(Long::longValue).sorted().toArray();
+			return row -> Arrays.binarySearch(set, f.applyAsLong(row)) >= 0;
+		}
+		String operator = parseOperator();
+		long literal = parseLiteral(value.kind());
+		return switch (operator) {
+			case "=" -> row -> f.applyAsLong(row) == literal;
+			case "!=" -> row -> {
+				long v = f.applyAsLong(row);
+				return v != MISSING && v != literal;
+			};
+			case "<" -> row -> {
+				long v = f.applyAsLong(row);
+				return v != MISSING && v < literal;
+			};
+			case "<=" -> row -> {
+				long v = f.applyAsLong(row);
+				return v != MISSING && v <= literal;
+			};
+			case ">" -> row -> f.applyAsLong(row) > literal;
+			default -> row -> f.applyAsLong(row) >= literal;
+		};
+	}
+
+	private Value parseKey() {
+		if (consumeWord("name")) return new Value("name", Kind.NAME, row -> table.nameIds[row]);
+		if (consumeWord("status")) return new Value("status", Kind.STATUS, row -> table.completed[row] == MISSING ? 0 : 1);
+		return parseValue();
+	}
+
+	private Aggregate parseAggregate() {
+		int start = position;
+		String function = parseWord().toLowerCase(Locale.ROOT);
+		if (function.equals("count")) return new Aggregate(function, null);
+		if (!List.of("avg", "min", "max", "sum").contains(function))
+			throw new IllegalArgumentException("Unknown aggregate '" + function + "' at " + start);
+		if (!consume("(")) throw new IllegalArgumentException("Expected '(' at " + position);
+		Value value = parseValue();
+		if (!consume(")")) throw new IllegalArgumentException("Missing ')' at " + position);
+		return new Aggregate(function, value);
+	}
+
+	private Value parseValue() {
+		Table t = table;
+		int start = position;
+		String word = parseWord().toLowerCase(Locale.ROOT);
+		switch (word) {
+			case "started":
+				return new Value(word, Kind.MOMENT, row -> t.initiated[row]);
+			case "completed":
+				return new Value(word, Kind.MOMENT, row -> t.completed[row]);
+			case "deadline":
+				return new Value(word, Kind.MOMENT, row -> t.deadlines[row]);
+			case "duration":
+				long now = System.currentTimeMillis();
+				return new Value(word, Kind.DURATION,
+						row -> (t.completed[row] == MISSING ? now : t.completed[row]) - t.initiated[row]);
+		}
+		if (!List.of("year", "month", "day", "weekday", "hour").contains(word))
+			throw new IllegalArgumentException("Unknown value '" + word + "' at " + start);
+		if (!consume("(")) throw new IllegalArgumentException("Expected '(' at " + position);
+		Value moment = parseValue();
+		if (moment.kind() != Kind.MOMENT) throw new IllegalArgumentException("Expected a moment at " + start);
+		if (!consume(")")) throw new IllegalArgumentException("Missing ')' at " + position);
+		IntToLongFunction f = moment.function();
+		ZoneRules zone = ZoneId.systemDefault().getRules();
+		String name = word + "(" + moment.name() + ")";
+		return switch (word) {
+			case "year" -> new Value(name, Kind.NUMBER, row -> field(zone, f.applyAsLong(row), 'y'));
+			case "month" -> new Value(name, Kind.MONTH, row -> field(zone, f.applyAsLong(row), 'M'));
+			case "day" -> new Value(name, Kind.NUMBER, row -> field(zone, f.applyAsLong(row), 'd'));
+			case "weekday" -> new Value(name, Kind.WEEKDAY, row -> field(zone, f.applyAsLong(row), 'w'));
+			default -> new Value(name, Kind.NUMBER, row -> field(zone, f.applyAsLong(row), 'h'));
+		};
+	}
+
+	private static long field(ZoneRules zone, long timestamp, char field) {
+		if (timestamp == MISSING) return MISSING;
+		long seconds = Math.floorDiv(timestamp, 1000) + zone.getOffset(Instant.ofEpochMilli(timestamp)).getTotalSeconds();
+		if (field == 'h') return Math.floorMod(seconds, 86400) / 3600;
+		LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(seconds, 86400));
+		return switch (field) {
+			case 'y' -> date.getYear();
+			case 'M' -> date.getMonthValue();
+			case 'd' -> date.getDayOfMonth();
+			default -> date.getDayOfWeek().getValue();
+		};
+	}
+
+	private long parseLiteral(Kind kind) {
+		skipSpaces();
+		int start = position;
+		while (position < query.length() && (Character.isLetterOrDigit(peek()) || peek() == '-' || peek() == '.'))
+			position++;
+		String literal = query.substring(start, position).toLowerCase(Locale.ROOT);
+		if (literal.isEmpty()) throw new IllegalArgumentException("Expected a value at " + start);
+		try {
+			switch (kind) {
+				case MOMENT:
+					return parseDate(literal);
+				case DURATION:
+					long unit = switch (literal.charAt(literal.length() - 1)) {
+						case 's' -> 1000;
+						case 'm' -> 60_000;
+						case 'h' -> 3600_000;
+						case 'd' -> 86400_000;
+						case 'w' -> 604800_000;
+						default -> throw new IllegalArgumentException("Expected a duration like 3d at " + start);
+					};
+					return (long) (Double.parseDouble(literal.substring(0, literal.length() - 1)) * unit);
+				case WEEKDAY:
+					for (DayOfWeek d : DayOfWeek.values()) {
+						if (d.name().toLowerCase(Locale.ROOT).startsWith(literal)) return d.getValue();
+					}
+					break;
+				case MONTH:
+					for (Month m : Month.values()) {
+						if (m.name().toLowerCase(Locale.ROOT).startsWith(literal)) return m.getValue();
+					}
+					break;
+			}
+			return Long.parseLong(literal);
+		} catch (NumberFormatException | DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid value '" + literal + "' at " + start);
+		}
+	}
+
+	private String format(Kind kind, long value) {
+		if (value == MISSING) return "-";
+		return switch (kind) {
+			case MOMENT -> ZonedDateTime.ofInstant(Instant.ofEpochMilli(value), ZoneId.systemDefault()).toLocalDate().toString();
+			case DURATION -> Timeline.msToUnitName(Math.max(0, value));
+			case MONTH -> Month.of((int) value).getDisplayName(TextStyle.SHORT, Locale.getDefault());
+			case WEEKDAY -> DayOfWeek.of((int) value).getDisplayName(TextStyle.SHORT, Locale.getDefault());
+			case NAME -> table.names[(int) value];
+			case STATUS -> value == 0 ? "open" : "completed";
+			case NUMBER -> String.valueOf(value);
+		};
+	}
+
+	private String formatAggregate(Accumulator accumulator, int i) {
+		Aggregate aggregate = aggregates.get(i);
+		if (aggregate.value() == null) return String.valueOf(accumulator.count);
+		if (accumulator.counts[i] == 0) return "-";
+		Kind kind = aggregate.value().kind();
+		return switch (aggregate.function()) {
+			case "avg" -> kind == Kind.NUMBER ? String.format("%.2f", accumulator.sums[i] / accumulator.counts[i])
+					: format(kind, Math.round(accumulator.sums[i] / accumulator.counts[i]));
+			case "min" -> format(kind, accumulator.minimums[i]);
+			case "max" -> format(kind, accumulator.maximums[i]);
+			default -> kind == Kind.DURATION || kind == Kind.NUMBER ? format(kind, (long) accumulator.sums[i]) : "-";
+		};
+	}
+
+	private boolean parseEquality() {
+		if (consume("=")) return true;
+		if (consume("!=")) return false;
+		throw new IllegalArgumentException("Expected '=' or '!=' at " + position);
+	}
+
+	private String parseOperator() {
+		for (String operator : List.of("<=", ">=", "!=", "=", "<", ">")) {
+			if (consume(operator)) return operator;
+		}
+		throw new IllegalArgumentException("Expected a comparison at " + position);
+	}
+
+	private boolean isComparisonNext() {
+		skipSpaces();
+		int start = position;
+		boolean result = peek() == '=' || peek() == '!' || peek() == '<' || peek() == '>' || consumeWord("in");
+		position = start;
+		return result;
+	}
+
+	private String parseString() {
+		skipSpaces();
+		char quote = peek();
+		if (quote != '"' && quote != '\'') throw new IllegalArgumentException("Expected a quoted string at " + position);
+		int end = query.indexOf(quote, position + 1);
+		if (end == -1) throw new IllegalArgumentException("Unterminated string at " + position);
+		String result = query.substring(position + 1, end);
+		position = end + 1;
+		return result;
+	}
+
+	private String parseWord() {
+		skipSpaces();
+		int start = position;
+		while (position < query.length() && TagFilter.isTagChar(query.charAt(position))) position++;
+		if (start == position) throw new IllegalArgumentException("Expected a word at " + start);
+		return query.substring(start, position);
+	}
+
+	private boolean consumeWord(String word) {
+		skipSpaces();
+		int end = position + word.length();
+		if (!query.regionMatches(true, position, word, 0, word.length())) return false;
+		if (end < query.length() && TagFilter.isTagChar(query.charAt(end))) return false;
+		position = end;
+		return true;
+	}
+
+	private boolean consume(String s) {
+		skipSpaces();
+		if (!query.startsWith(s, position)) return false;
+		position += s.length();
+		return true;
+	}
+
+	private char peek() {
+		return position < query.length() ? query.charAt(position) : 0;
+	}
+
+	private void skipSpaces() {
+		while (position < query.length() && Character.isWhitespace(query.charAt(position))) position++;
+	}
+
+	/**
+	 * Count and per aggregate the sum, minimum and maximum of the values that aren't missing, and their number.
+	 */
+	private static class Accumulator {
+		private long count;
+		private final double[] sums;
+		private final long[] minimums, maximums, counts;
+
+		Accumulator(int aggregates) {
+			sums = new double[aggregates];
+			minimums = new long[aggregates];
+			maximums = new long[aggregates];
+			counts = new long[aggregates];
+			Arrays.fill(minimums, Long.MAX_VALUE);
+			Arrays.fill(maximums, Long.MIN_VALUE);
+		}
+
+		void add(int row, IntToLongFunction[] values) {
+			count++;
+			for (int i = 0; i < values.length; i++) {
+				long v = values[i].applyAsLong(row);
+				if (v == MISSING) continue;
+				sums[i] += v;
+				minimums[i] = Math.min(minimums[i], v);
+				maximums[i] = Math.max(maximums[i], v);
+				counts[i]++;
+			}
+		}
+
+		Accumulator merge(Accumulator other) {
+			count += other.count;
+			for (int i = 0; i < sums.length; i++) {
+				sums[i] += other.sums[i];
+				minimums[i] = Math.min(minimums[i], other.minimums[i]);
+				maximums[i] = Math.max(maximums[i], other.maximums[i]);
+				counts[i] += other.counts[i];
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Column-wise copy of the goals, so the scan doesn't chase pointers and can't see concurrent changes.
+	 */
+	private static class Table {
+		final int size;
+		final long[] initiated, completed, deadlines;
+		final int[] nameIds;
+		final boolean[] overdue;
+		final List<?>[] tags;
+		final String[] names; // by name id
+
+		Table(List<Goal> goals) {
+			size = goals.size();
+			initiated = new long[size];
+			completed = new long[size];
+			deadlines = new long[size];
+			nameIds = new int[size];
+			overdue = new boolean[size];
+			tags = new List<?>[size];
+			int maxNameId = -1;
+			for (Goal g : goals) maxNameId = Math.max(maxNameId, g.getNameId());
+			names = new String[maxNameId + 1];
+			for (int i = 0; i < size; i++) {
+				Goal g = goals.get(i);
+				if (g.getNameId() == -1) throw new IllegalArgumentException("Goal " + g.getId() + " isn't in AppData");
+				initiated[i] = g.getInitiated();
+				completed[i] = g.isCompleted() ? g.getCompleted() : MISSING;
+				deadlines[i] = g.hasDeadline() ? g.getDeadline() : MISSING;
+				nameIds[i] = g.getNameId();
+				overdue[i] = g.isOverdue();
+				tags[i] = g.getTags();
+				names[g.getNameId()] = g.getName();
+			}
+		}
+	}
+}
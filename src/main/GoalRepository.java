@@ -0,0 +1,37 @@
+package main;
+
+import java.util.List;
+
+/**
+ * Persistent storage of goals. Returned goals are detached copies; changes reach the storage only
+ * through {@link #put} and {@link #delete}, and are guaranteed to be durable after {@link #flush}.
+ * {@link #findInRange} and {@link #findById} may be called from any thread, also while the others run.
+ */
+public interface GoalRepository {
+	List<Goal> loadAll();
+
+	/**
+	 * Reads a page of the goals overlapping [start, end] (open goals extend indefinitely), sorted by
+	 * initiation and then id.
+	 *
+	 * @param after the last goal of the previous page, or null for the first page
+	 * @param limit the most goals to return; fewer mean there are no more
+	 */
+	List<Goal> findInRange(long start, long end, Goal after, int limit);
+
+	/**
+	 * @return the goal with the given id, or null if there's none
+	 */
+	Goal findById(int id);
+
+	/**
+	 * Inserts the goal or replaces the stored one with the same id.
+	 */
+	void put(Goal g);
+
+	void delete(int id);
+
+	void flush();
+
+	void close();
+}
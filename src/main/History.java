@@ -0,0 +1,165 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * In-memory log of every {@link GoalEvent} with periodic snapshots of the replayed state, so that
+ * the goals as they were at any moment can be restored by replaying a bounded tail of events.
+ */
+public class History {
+	private static final int MIN_SNAPSHOT_INTERVAL = 1024;
+
+	private final List<GoalEvent> events = new ArrayList<>();
+	private long[] timestamps = new long[1024];
+	private int maxGoalId = -1;
+	private final BitSet seenGoalIds = new BitSet();
+
+	// snapshots.get(i) is the state after snapshotEventIndexes[i] events
+	private final List<Goal[]> snapshots = new ArrayList<>();
+	private int[] snapshotEventIndexes = new int[16];
+	// replayed state after all events, sharing unchanged goals with the last snapshot
+	private Goal[] state = new Goal[16];
+	private BitSet ownedByState = new BitSet();
+	private int liveGoals;
+
+	public History() {
+		snapshots.add(new Goal[0]);
+	}
+
+	/**
+	 * Reconstructs an approximate log from the goals, for when no journal exists yet.
+	 */
+	public static List<GoalEvent> reconstruct(List<Goal> goals) {
+		List<GoalEvent> result = new ArrayList<>();
+		for (Goal g : goals) {
+			result.add(GoalEvent.added(g).withTimestamp(g.getInitiated()).withVersion(g.getVersion()));
+			if (g.isCompleted())
+				result.add(GoalEvent.completed(g).withTimestamp(g.getCompleted()).withVersion(g.getVersion()));
+			if (g.hasDeadline())
+				result.add(GoalEvent.deadlineSet(g).withTimestamp(g.getInitiated()).withVersion(g.getVersion()));
+		}
+		result.sort(Comparator.comparingLong(e -> e.timestamp));
+		return result;
+	}
+
+	public void record(GoalEvent e) {
+		if (!events.isEmpty() && e.timestamp < lastTimestamp())
+			e = e.withTimestamp(lastTimestamp()); // keep the log sorted if the clock goes backwards
+		if (events.size() == timestamps.length) timestamps = Arrays.copyOf(timestamps, events.size() * 2);
+		timestamps[events.size()] = e.timestamp;
+		events.add(e);
+		maxGoalId = Math.max(maxGoalId, e.goalId);
+		seenGoalIds.set(e.goalId);
+
+		boolean existed = e.goalId < state.length && state[e.goalId] != null;
+		state = replay(state, ownedByState, e);
+		boolean exists = state[e.goalId] != null;
+		if (existed != exists) liveGoals += exists ? 1 : -1;
+		int sinceSnapshot = events.size() - snapshotEventIndexes[snapshots.size() - 1];
+		// Snapshot size grows with the number of goals, so space them out accordingly
+		if (sinceSnapshot >= Math.max(MIN_SNAPSHOT_INTERVAL, liveGoals / 4)) takeSnapshot();
+	}
+
+	/**
+	 * @return the largest goal id ever seen, so that ids of removed goals aren't handed out again
+	 */
+	public int getMaxGoalId() {
+		return maxGoalId;
+	}
+
+	public boolean hasSeen(int goalId) {
+		return seenGoalIds.get(goalId);
+	}
+
+	/**
+	 * @return the goal as of the last event, or null if it doesn't exist by then
+	 */
+	Goal latest(int id) {
+		return id < state.length ? state[id] : null;
+	}
+
+	public long firstTimestamp() {
+		return events.isEmpty() ? System.currentTimeMillis() : timestamps[0];
+	}
+
+	public long lastTimestamp() {
+		return timestamps[events.size() - 1];
+	}
+
+	/**
+	 * @return the goals as they were at the given moment, detached from the live ones, sorted by initiation and placed
+	 */
+	public List<Goal> goalsAt(long timestamp) {
+		int eventsNumber = upperBound(timestamps, events.size(), timestamp);
+		int snapshotIndex = upperBound(snapshotEventIndexes, snapshots.size(), eventsNumber) - 1;
+
+		Goal[] snapshot = snapshots.get(snapshotIndex);
+		Goal[] restored = Arrays.copyOf(snapshot, Math.max(snapshot.length, 16));
+		BitSet owned = new BitSet();
+		for (int i = snapshotEventIndexes[snapshotIndex]; i < eventsNumber; i++)
+			restored = replay(restored, owned, events.get(i));
+
+		List<Goal> result = new ArrayList<>();
+		for (Goal g : restored) {
+			if (g != null) result.add(g);
+		}
+		result.sort(Comparator.comparingLong(Goal::getInitiated));
+		int[] levels = AppData.place(result);
+		for (int i = 0; i < levels.length; i++) result.get(i).displayLevel = levels[i];
+		return result;
+	}
+
+	private Goal[] replay(Goal[] goals, BitSet owned, GoalEvent e) {
+		if (e.goalId >= goals.length) goals = Arrays.copyOf(goals, Math.max(goals.length * 2, e.goalId + 1));
+		switch (e.type) {
+			case ADDED -> {
+				goals[e.goalId] = Goal.fromEvent(e);
+				owned.set(e.goalId);
+			}
+			case REMOVED -> goals[e.goalId] = null;
+			default -> {
+				Goal g = goals[e.goalId];
+				if (g == null) throw new Error("History event " + e.type + " for a missing goal " + e.goalId);
+				if (!owned.get(e.goalId)) {
+					g = g.copy();
+					goals[e.goalId] = g;
+					owned.set(e.goalId);
+				}
+				g.apply(e);
+			}
+		}
+		return goals;
+	}
+
+	private void takeSnapshot() {
+		if (snapshots.size() == snapshotEventIndexes.length)
+			snapshotEventIndexes = Arrays.copyOf(snapshotEventIndexes, snapshots.size() * 2);
+		snapshotEventIndexes[snapshots.size()] = events.size();
+		snapshots.add(state.clone());
+		ownedByState = new BitSet(); // from now on every goal in the state is shared with the snapshot
+	}
+
+	private static int upperBound(long[] array, int length, long key) {
+		int low = 0, high = length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (array[mid] <= key) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+
+	private static int upperBound(int[] array, int length, int key) {
+		int low = 0, high = length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (array[mid] <= key) low = mid + 1;
+			else high = mid;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,377 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * The history.bin file: an append-only log of {@link GoalEvent}s shared by every running instance.
+ * Access is coordinated with a file lock; while holding it an instance first reads what others have
+ * appended since its last visit, and only then writes its own events. A file sync tool doesn't take the
+ * lock and may replace the file, by renaming another one over it or rewriting it; then the new file is
+ * read from the start and the events this instance wrote that it lacks are appended to it again.
+ */
+public class Journal {
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 4;
+	private static final int TAIL_SIZE = 32;
+	private static final GoalEvent.Type[] TYPES = GoalEvent.Type.values();
+
+	private final File file;
+	private FileChannel channel;
+	private Object fileKey; // of the open file, if the file system has them
+	private final Consumer<List<GoalEvent>> foreignEventsListener;
+	private long readOffset; // everything before it has been seen by this instance
+	private byte[] tail = new byte[0]; // the bytes right before readOffset, changed only if the file was rewritten
+	private final List<GoalEvent> written = new ArrayList<>(); // by this instance since it opened the file
+	private FileLock lock;
+
+	public Journal(File file, Consumer<List<GoalEvent>> foreignEventsListener) {
+		if (file.isDirectory()) throw new Error(file.getAbsolutePath() + " is occupied by a directory");
+		this.file = file;
+		this.foreignEventsListener = foreignEventsListener;
+		openChannel();
+	}
+
+	private void openChannel() {
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			fileKey = Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey();
+		} catch (IOException e) {
+			throw new Error("Failed to open the history file (" + file.getAbsolutePath() + ")", e);
+		}
+	}
+
+	/**
+	 * Reads every event of the journal, creating it with the given events if it's empty.
+	 */
+	public List<GoalEvent> open(List<GoalEvent> initialEvents) {
+		List<GoalEvent> result = new ArrayList<>();
+		locked(() -> {
+			try {
+				if (channel.size() == 0) {
+					writeAt(0, encode(initialEvents, true));
+					result.addAll(initialEvents);
+					written.addAll(initialEvents);
+					setReadOffset(channel.size());
+					return;
+				}
+				int version = readHeader();
+				result.addAll(readFrom(HEADER_SIZE, version));
+				if (version != VERSION) {
+					// rewrite in the current format; other instances would have upgraded it too, so none is running
+					writeAt(0, encode(result, true));
+					setReadOffset(channel.size());
+				}
+			} catch (IOException e) {
+				throw new Error("Failed to read the history file (" + file.getAbsolutePath() + ")", e);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Runs the action holding the journal lock, after passing the events appended by other instances
+	 * to the listener. Nested calls reuse the lock.
+	 */
+	public void locked(Runnable action) {
+		if (lock != null) {
+			action.run();
+			return;
+		}
+		try {
+			lock = channel.lock();
+		} catch (IOException e) {
+			throw new Error("Failed to lock the history file", e);
+		}
+		try {
+			if (readOffset != 0) {
+				if (isReplaced()) reopen();
+				else catchUp();
+			}
+			action.run();
+		} finally {
+			try {
+				lock.release();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			lock = null;
+		}
+	}
+
+	/**
+	 * Picks up the events other instances have appended, if any.
+	 */
+	public void synchronize() {
+		locked(() -> {
+		});
+	}
+
+	public void append(GoalEvent e) {
+		locked(() -> {
+			try {
+				writeAt(readOffset, encode(List.of(e), false));
+				written.add(e);
+				setReadOffset(channel.size());
+			} catch (IOException ex) {
+				throw new Error("Failed to write the history file", ex);
+			}
+		});
+	}
+
+	/**
+	 * Calls {@link #synchronize()} through the given executor whenever the file changes on disk.
+	 */
+	public void watch(Consumer<Runnable> executor) {
+		Thread watcher = new Thread(() -> {
+			try (WatchService service = FileSystems.getDefault().newWatchService()) {
+				Path directory = file.getAbsoluteFile().getParentFile().toPath();
+				directory.register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+				while (true) {
+					WatchKey key = service.take();
+					boolean changed = false;
+					for (WatchEvent<?> event : key.pollEvents())
+						changed |= file.getName().equals(String.valueOf(event.context()));
+					if (changed) executor.accept(this::synchronize);
+					if (!key.reset()) return;
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			} catch (InterruptedException ignored) {
+			}
+		}, "Journal watcher");
+		watcher.setDaemon(true);
+		watcher.start();
+	}
+
+	private void catchUp() {
+		List<GoalEvent> foreign;
+		try {
+			if (channel.size() == readOffset) return;
+			foreign = readFrom(readOffset, VERSION);
+		} catch (IOException e) {
+			throw new Error("Failed to read the history file", e);
+		}
+		if (!foreign.isEmpty()) foreignEventsListener.accept(foreign);
+	}
+
+	/**
+	 * @return whether another file was moved to the path, or the open one was rewritten rather than appended to
+	 */
+	private boolean isReplaced() {
+		try {
+			BasicFileAttributes attributes;
+			try {
+				attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			} catch (NoSuchFileException e) {
+				return false; // in the middle of being replaced; the watcher reports when the new file is there
+			}
+			long size = channel.size();
+			if (fileKey != null ? !fileKey.equals(attributes.fileKey()) : attributes.size() != size) return true;
+			if (size < readOffset) return true;
+			ByteBuffer bytes = ByteBuffer.allocate(tail.length);
+			readFully(bytes, readOffset - tail.length);
+			return !Arrays.equals(bytes.array(), tail);
+		} catch (IOException e) {
+			throw new Error("Failed to read the history file", e);
+		}
+	}
+
+	/**
+	 * Switches to the file now at the path, passes all its events to the listener (merging is idempotent)
+	 * and appends to it the events written by this instance that it doesn't have.
+	 */
+	private void reopen() {
+		try {
+			channel.close(); // releases the lock
+			openChannel();
+			lock = channel.lock();
+			List<GoalEvent> events = new ArrayList<>();
+			int version = VERSION;
+			if (channel.size() >= HEADER_SIZE) {
+				version = readHeader();
+				events.addAll(readFrom(HEADER_SIZE, version));
+			}
+			Set<EventKey> present = new HashSet<>();
+			for (GoalEvent e : events) present.add(EventKey.of(e));
+			List<GoalEvent> missing = new ArrayList<>();
+			for (GoalEvent e : written) {
+				if (!present.contains(EventKey.of(e))) missing.add(e);
+			}
+			if (channel.size() < HEADER_SIZE || version != VERSION) {
+				List<GoalEvent> all = new ArrayList<>(events);
+				all.addAll(missing);
+				writeAt(0, encode(all, true));
+				setReadOffset(channel.size());
+			} else if (!missing.isEmpty()) {
+				writeAt(readOffset, encode(missing, false));
+				setReadOffset(channel.size());
+			}
+			if (!events.isEmpty()) foreignEventsListener.accept(events);
+		} catch (IOException e) {
+			throw new Error("Failed to reopen the history file (" + file.getAbsolutePath() + ")", e);
+		}
+	}
+
+	private int readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		channel.read(header, 0);
+		int version = header.getInt(0);
+		if (version < 1 || version > VERSION)
+			throw new Error("Incompatible history file (running version " + VERSION + ", found " + version);
+		return version;
+	}
+
+	/**
+	 * Reads the events from the offset to the end and moves {@link #readOffset} past the last complete one.
+	 */
+	private List<GoalEvent> readFrom(long offset, int version) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) (channel.size() - offset));
+		readFully(buffer, offset);
+		buffer.flip();
+		List<GoalEvent> result = new ArrayList<>();
+		// names and tags repeat a lot, so each read shares one instance of every string; not kept longer,
+		// as the goals are pooled in AppData
+		Map<String, String> strings = new HashMap<>();
+		int lastComplete = 0;
+		try {
+			while (buffer.hasRemaining()) {
+				result.add(readEvent(buffer, version, strings));
+				lastComplete = buffer.position();
+			}
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			// a record cut off by a crash, or garbage; either gets overwritten by the next append
+		}
+		setReadOffset(offset + lastComplete);
+		return result;
+	}
+
+	private void readFully(ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) break;
+		}
+	}
+
+	private void setReadOffset(long offset) throws IOException {
+		readOffset = offset;
+		ByteBuffer bytes = ByteBuffer.allocate((int) Math.min(TAIL_SIZE, offset - HEADER_SIZE));
+		readFully(bytes, offset - bytes.capacity());
+		tail = bytes.array();
+	}
+
+	private void writeAt(long offset, byte[] data) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		while (buffer.hasRemaining()) channel.write(buffer, offset + buffer.position());
+		channel.truncate(offset + data.length);
+		channel.force(false);
+	}
+
+	private static byte[] encode(List<GoalEvent> events, boolean withHeader) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		if (withHeader) output.writeInt(VERSION);
+		for (GoalEvent e : events) writeEvent(output, e);
+		return bytes.toByteArray();
+	}
+
+	private static void writeEvent(DataOutputStream output, GoalEvent e) throws IOException {
+		output.writeByte(e.type.ordinal());
+		output.writeLong(e.timestamp);
+		output.writeInt(e.goalId);
+		output.writeInt(e.version);
+		switch (e.type) {
+			case ADDED -> {
+				writeString(output, e.text);
+				output.writeLong(e.value);
+				output.writeInt(e.tags.size());
+				for (String tag : e.tags) writeString(output, tag);
+			}
+			case COMPLETED, INITIATED_CHANGED, DEADLINE_SET -> output.writeLong(e.value);
+			case RENAMED -> writeString(output, e.text);
+			case TAGS_CHANGED -> {
+				output.writeInt(e.tags.size());
+				for (String tag : e.tags) writeString(output, tag);
+			}
+		}
+	}
+
+	private static GoalEvent readEvent(ByteBuffer buffer, int version, Map<String, String> strings) {
+		int ordinal = buffer.get();
+		if (ordinal < 0 || ordinal >= TYPES.length) throw new IllegalArgumentException("Unknown event type " + ordinal);
+		GoalEvent.Type type = TYPES[ordinal];
+		long timestamp = buffer.getLong();
+		int goalId = buffer.getInt();
+		int goalVersion = version >= 2 ? buffer.getInt() : 0;
+		long value = 0;
+		String text = null;
+		List<String> tags = null;
+		switch (type) {
+			case ADDED -> {
+				text = readString(buffer, strings);
+				value = buffer.getLong();
+				tags = readTags(buffer, strings);
+			}
+			case COMPLETED, INITIATED_CHANGED, DEADLINE_SET -> value = buffer.getLong();
+			case RENAMED -> text = readString(buffer, strings);
+			case TAGS_CHANGED -> tags = readTags(buffer, strings);
+		}
+		return new GoalEvent(type, timestamp, goalId, goalVersion, value, text, tags);
+	}
+
+	private static void writeString(DataOutputStream output, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		output.writeInt(bytes.length);
+		output.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer, Map<String, String> strings) {
+		int length = buffer.getInt();
+		if (length < 0) throw new IllegalArgumentException("Negative string length " + length);
+		if (length > buffer.remaining()) throw new BufferUnderflowException();
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		String s = new String(bytes, StandardCharsets.UTF_8);
+		return strings.computeIfAbsent(s, k -> k);
+	}
+
+	private static List<String> readTags(ByteBuffer buffer, Map<String, String> strings) {
+		int tagsNumber = buffer.getInt();
+		if (tagsNumber < 0) throw new IllegalArgumentException("Negative number of tags " + tagsNumber);
+		if (tagsNumber > buffer.remaining() / 4) throw new BufferUnderflowException();
+		List<String> tags = new ArrayList<>(tagsNumber);
+		for (int i = 0; i < tagsNumber; i++) tags.add(readString(buffer, strings));
+		return List.copyOf(tags);
+	}
+
+	private record EventKey(GoalEvent.Type type, long timestamp, int goalId, int version) {
+		static EventKey of(GoalEvent e) {
+			return new EventKey(e.type, e.timestamp, e.goalId, e.version);
+		}
+	}
+}
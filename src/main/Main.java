@@ -1,15 +1,54 @@
 package main;
 
 import javax.swing.*;
+import java.lang.reflect.InvocationTargetException;
 
 public class Main {
 	public static void main(String[] args) {
+		// read once, when the first HttpServer is created; see ApiServer
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+		if (args.length == 2 && args[0].equals("--query")) {
+			query(args[1]);
+			return;
+		}
 		try {
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		AppData.init();
-		new UI().setVisible(true);
+		// painting the last exit's view right away, while the goals are being loaded
+		UI ui = new UI(StartupSnapshot.read(AppData.getSnapshotFile()));
+		ui.setVisible(true);
+		new Thread(() -> {
+			try {
+				AppData.init();
+			} catch (Throwable e) {
+				e.printStackTrace();
+				SwingUtilities.invokeLater(() -> {
+					JOptionPane.showMessageDialog(null, e.getMessage(), "Failed to load the goals", JOptionPane.ERROR_MESSAGE);
+					System.exit(1);
+				});
+				return;
+			}
+			SwingUtilities.invokeLater(ui::onDataLoaded);
+		}, "Loading").start();
+	}
+
+	/**
+	 * Runs {@code java main.Main --query "<query>"} without opening the window; see {@link GoalQuery}.
+	 */
+	private static void query(String query) {
+		try {
+			SwingUtilities.invokeAndWait(() -> {
+				AppData.init();
+				System.out.println(GoalQuery.run(query, AppData.getGoals()));
+			});
+		} catch (InvocationTargetException e) {
+			System.err.println(e.getCause().getMessage());
+			System.exit(1);
+		} catch (InterruptedException e) {
+			throw new Error(e);
+		}
+		System.exit(0);
 	}
 }
@@ -0,0 +1,101 @@
+package main;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Overview strip of the number of open goals across the whole history, with the timeline's visible
+ * range drawn as a window that can be dragged. Columns are sampled from {@link Statistics} only when
+ * the goals or the size change, so painting doesn't depend on the number of goals.
+ */
+public class Minimap {
+	private static final long PADDING = 86400_000;
+
+	private int x, y, width, height;
+	private DoubleConsumer onMove; // accepts the new start of the visible range
+	private long[] columns = new long[0];
+	private long maxColumn;
+	private long rangeStart, rangeEnd;
+	private int cachedModCount = -1;
+	private long cachedAt;
+	private long viewStart, viewEnd;
+	private double dragOffset = Double.NaN; // timestamp offset of the cursor from viewStart while dragged
+
+	public Minimap(DoubleConsumer onMove) {
+		this.onMove = onMove;
+	}
+
+	public void setBounds(int x, int y, int width, int height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		cachedModCount = -1;
+	}
+
+	public void mousePressed(MouseEvent e) {
+		if (!new Rectangle(x, y, width, height).contains(e.getPoint())) return;
+		long t = xToUnix(e.getX());
+		// grab the window where clicked, or centre it on the cursor when clicked outside it
+		dragOffset = t >= viewStart && t <= viewEnd ? t - viewStart : (viewEnd - viewStart) / 2d;
+		mouseDragged(e);
+	}
+
+	public void mouseDragged(MouseEvent e) {
+		if (Double.isNaN(dragOffset)) return;
+		onMove.accept(xToUnix(e.getX()) - dragOffset);
+	}
+
+	public void mouseReleased(MouseEvent e) {
+		dragOffset = Double.NaN;
+	}
+
+	public void paint(Graphics2D g, long viewStart, long viewEnd) {
+		this.viewStart = viewStart;
+		this.viewEnd = viewEnd;
+		Statistics statistics = AppData.getStatistics();
+		long now = System.currentTimeMillis();
+		if (statistics.getModCount() != cachedModCount || columns.length != width || now - cachedAt > 1000) {
+			resample(statistics, now);
+			cachedModCount = statistics.getModCount();
+			cachedAt = now;
+		}
+
+		g.setColor(new Color(21, 21, 21));
+		g.fillRect(x, y, width, height);
+		g.setColor(Color.darkGray);
+		for (int i = 0; i < columns.length; i++) {
+			if (columns[i] == 0) continue;
+			int columnHeight = (int) Math.max(1, columns[i] * height / maxColumn);
+			g.drawLine(x + i, y + height - columnHeight, x + i, y + height - 1);
+		}
+
+		int windowStart = Math.max(x, unixToX(viewStart));
+		int windowEnd = Math.min(x + width, Math.max(unixToX(viewEnd), windowStart + 2));
+		g.setColor(Color.gray);
+		g.drawRect(windowStart, y, windowEnd - windowStart, height);
+	}
+
+	private void resample(Statistics statistics, long now) {
+		rangeEnd = now + PADDING;
+		rangeStart = rangeEnd - 2 * PADDING;
+		if (!AppData.getGoals().isEmpty())
+			rangeStart = Math.min(rangeStart, AppData.getGoals().get(0).getInitiated() - PADDING);
+
+		columns = new long[Math.max(width, 0)];
+		maxColumn = 1;
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = statistics.countOpen(xToUnix(x + i) + (rangeEnd - rangeStart) / width / 2);
+			maxColumn = Math.max(maxColumn, columns[i]);
+		}
+	}
+
+	private long xToUnix(int absoluteX) {
+		return rangeStart + (long) ((double) (absoluteX - x) / width * (rangeEnd - rangeStart));
+	}
+
+	private int unixToX(long unix) {
+		return x + (int) Math.round((double) (unix - rangeStart) / (rangeEnd - rangeStart) * width);
+	}
+}
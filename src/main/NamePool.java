@@ -0,0 +1,66 @@
+package main;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interned goal names: every distinct name of the live goals is kept once and numbered, so goals with the
+ * same name share one string and can be grouped or compared by the number. Names are reference counted
+ * and dropped once no goal uses them, and their numbers are given to the next new names. Goals detached
+ * from the model (historic copies, for example) keep only their string, so they aren't affected.
+ */
+public class NamePool {
+	private final Map<String, Integer> ids = new HashMap<>();
+	private String[] names = new String[64];
+	private int[] references = new int[64];
+	private int nextId;
+	private int[] freeIds = new int[16]; // released below nextId, reused last in first out
+	private int freeIdsNumber;
+
+	/**
+	 * @return the id of the name, counting one more reference to it
+	 */
+	public int acquire(String name) {
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = freeIdsNumber > 0 ? freeIds[--freeIdsNumber] : nextId++;
+			if (id == names.length) {
+				names = Arrays.copyOf(names, id * 2);
+				references = Arrays.copyOf(references, id * 2);
+			}
+			names[id] = name;
+			ids.put(name, id);
+		}
+		references[id]++;
+		return id;
+	}
+
+	public void release(int id) {
+		if (id < 0 || id >= nextId || references[id] == 0) throw new IllegalArgumentException("Unknown name id " + id);
+		if (--references[id] > 0) return;
+		ids.remove(names[id]);
+		names[id] = null;
+		if (freeIdsNumber == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeIdsNumber * 2);
+		freeIds[freeIdsNumber++] = id;
+	}
+
+	public String get(int id) {
+		if (id < 0 || id >= nextId || names[id] == null) throw new IllegalArgumentException("Unknown name id " + id);
+		return names[id];
+	}
+
+	/**
+	 * @return number of live goals with the name
+	 */
+	public int getReferences(int id) {
+		return id < 0 || id >= nextId ? 0 : references[id];
+	}
+
+	/**
+	 * @return number of distinct names in use
+	 */
+	public int size() {
+		return ids.size();
+	}
+}
@@ -0,0 +1,136 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an RGB PNG row by row, so that images much larger than the memory can be produced.
+ */
+public class PngWriter implements Closeable {
+	private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+	private static final int IDAT_CHUNK_SIZE = 1 << 16;
+
+	private final DataOutputStream output;
+	private final Deflater deflater = new Deflater();
+	private final DeflaterOutputStream compressor;
+	private final int width, height;
+	private final byte[] row, previousRow;
+	private int rowsWritten;
+
+	public PngWriter(OutputStream output, int width, int height) throws IOException {
+		this.output = new DataOutputStream(output);
+		this.width = width;
+		this.height = height;
+		row = new byte[1 + width * 3];
+		previousRow = new byte[row.length];
+
+		this.output.write(SIGNATURE);
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream headerData = new DataOutputStream(header);
+		headerData.writeInt(width);
+		headerData.writeInt(height);
+		headerData.writeByte(8); // bit depth
+		headerData.writeByte(2); // colour type: RGB
+		headerData.writeByte(0); // compression
+		headerData.writeByte(0); // filter
+		headerData.writeByte(0); // interlace
+		writeChunk("IHDR", header.toByteArray(), header.size());
+		compressor = new DeflaterOutputStream(new IdatStream(), deflater, true);
+	}
+
+	/**
+	 * @param pixels packed 0xRRGGBB values of the row, starting at the offset
+	 */
+	public void writeRow(int[] pixels, int offset) throws IOException {
+		if (rowsWritten == height) throw new IllegalStateException("All " + height + " rows are already written");
+		// "Up" filter: timeline images are mostly made of vertical runs
+		row[0] = 2;
+		for (int i = 0; i < width; i++) {
+			int p = pixels[offset + i];
+			row[1 + i * 3] = (byte) (p >> 16);
+			row[2 + i * 3] = (byte) (p >> 8);
+			row[3 + i * 3] = (byte) p;
+		}
+		for (int i = 1; i < row.length; i++) {
+			byte raw = row[i];
+			row[i] = (byte) (raw - previousRow[i]);
+			previousRow[i] = raw;
+		}
+		compressor.write(row);
+		rowsWritten++;
+	}
+
+	/**
+	 * Finishes the image if all rows were written, and releases the stream and the compressor either way.
+	 *
+	 * @throws IllegalStateException if some rows are missing, once everything is released
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (rowsWritten == height) {
+				compressor.finish();
+				compressor.flush();
+				writeChunk("IEND", new byte[0], 0);
+			}
+		} finally {
+			deflater.end();
+			output.close();
+		}
+		if (rowsWritten != height) throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows written");
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		output.writeInt(length);
+		output.write(typeBytes);
+		output.write(data, 0, length);
+		output.writeInt((int) crc.getValue());
+	}
+
+	// Collects the compressed data into IDAT chunks of a bounded size
+	private class IdatStream extends OutputStream {
+		private final byte[] buffer = new byte[IDAT_CHUNK_SIZE];
+		private int size;
+
+		@Override
+		public void write(int b) throws IOException {
+			buffer[size++] = (byte) b;
+			if (size == buffer.length) flush();
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int n = Math.min(len, buffer.length - size);
+				System.arraycopy(b, off, buffer, size, n);
+				size += n;
+				off += n;
+				len -= n;
+				if (size == buffer.length) flush();
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (size == 0) return;
+			writeChunk("IDAT", buffer, size);
+			size = 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
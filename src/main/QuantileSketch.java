@@ -0,0 +1,86 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Log-bucketed histogram of positive values with a bounded relative error. Sketches can be added to
+ * and subtracted from each other, which lets them live in a {@link FenwickTree}-like structure.
+ */
+public class QuantileSketch {
+	private static final double RELATIVE_ACCURACY = 0.01;
+	private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+	private static final double LOG_GAMMA = Math.log(GAMMA);
+
+	private int[] counts = new int[0];
+	private int offset; // bucket index of counts[0]
+	private long zeroCount;
+	private long count;
+
+	public void add(long value, int delta) {
+		count += delta;
+		if (value <= 0) {
+			zeroCount += delta;
+			return;
+		}
+		int bucket = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+		ensureBucket(bucket);
+		counts[bucket - offset] += delta;
+	}
+
+	/**
+	 * Adds (sign 1) or subtracts (sign -1) all values of another sketch.
+	 */
+	public void merge(QuantileSketch other, int sign) {
+		count += sign * other.count;
+		zeroCount += sign * other.zeroCount;
+		if (other.counts.length == 0) return;
+		ensureBucket(other.offset);
+		ensureBucket(other.offset + other.counts.length - 1);
+		for (int i = 0; i < other.counts.length; i++) counts[other.offset - offset + i] += sign * other.counts[i];
+	}
+
+	public QuantileSketch copy() {
+		QuantileSketch copy = new QuantileSketch();
+		copy.counts = counts.clone();
+		copy.offset = offset;
+		copy.zeroCount = zeroCount;
+		copy.count = count;
+		return copy;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return approximate value at quantile q in [0, 1], or -1 if the sketch is empty
+	 */
+	public long quantile(double q) {
+		if (count <= 0) return -1;
+		long rank = (long) Math.ceil(q * count);
+		long seen = zeroCount;
+		if (seen >= rank) return 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) return Math.round(2 * Math.pow(GAMMA, i + offset) / (GAMMA + 1));
+		}
+		return Math.round(2 * Math.pow(GAMMA, offset + counts.length - 1) / (GAMMA + 1));
+	}
+
+	private void ensureBucket(int bucket) {
+		if (counts.length == 0) {
+			counts = new int[8];
+			offset = bucket;
+			return;
+		}
+		if (bucket < offset) {
+			int shift = Math.max(offset - bucket, counts.length / 2);
+			int[] grown = new int[counts.length + shift];
+			System.arraycopy(counts, 0, grown, shift, counts.length);
+			counts = grown;
+			offset -= shift;
+		} else if (bucket >= offset + counts.length) {
+			counts = Arrays.copyOf(counts, Math.max(bucket - offset + 1, counts.length * 3 / 2));
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package main;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Schedules, for every open goal with a deadline, a reminder a day before the deadline and one when it
+ * passes, which also marks the goal overdue. Timers live in a {@link TimingWheel}, so keeping them up to
+ * date with every event is O(1) no matter how many goals there are.
+ */
+public class Reminders {
+	private static final long REMINDER_LEAD = 86400_000;
+
+	private final TimingWheel wheel;
+	private final Map<Integer, TimingWheel.Timer[]> timers = new HashMap<>();
+	private Consumer<String> listener = message -> {
+	};
+
+	public Reminders(long now) {
+		wheel = new TimingWheel(1000, now);
+	}
+
+	public void setListener(Consumer<String> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Schedules the reminders without announcing the ones that are already late, for use on startup.
+	 */
+	public void load(Iterable<Goal> goals, long now) {
+		for (Goal g : goals) {
+			g.overdue = isOverdue(g, now);
+			if (!g.overdue) schedule(g, now);
+		}
+	}
+
+	public void onEvent(GoalEvent e) {
+		switch (e.type) {
+			case ADDED, COMPLETED, COMPLETION_CANCELLED, DEADLINE_SET, DEADLINE_CLEARED -> {
+				cancel(e.goalId);
+				Goal g = AppData.getGoal(e.goalId);
+				if (g == null) return;
+				long now = System.currentTimeMillis();
+				g.overdue = isOverdue(g, now);
+				if (!g.overdue) schedule(g, now);
+			}
+			case REMOVED -> cancel(e.goalId);
+			default -> {
+			}
+		}
+	}
+
+	/**
+	 * Fires the reminders due by the given moment.
+	 */
+	public void advance(long now) {
+		wheel.advance(now);
+	}
+
+	private void schedule(Goal g, long now) {
+		if (!g.hasDeadline() || g.isCompleted()) return;
+		long deadline = g.getDeadline();
+		TimingWheel.Timer[] goalTimers = new TimingWheel.Timer[2];
+		if (deadline - REMINDER_LEAD > now) {
+			goalTimers[0] = wheel.schedule(deadline - REMINDER_LEAD,
+					() -> listener.accept("\"" + g.getName() + "\" is due in a day"));
+		}
+		goalTimers[1] = wheel.schedule(deadline, () -> {
+			g.overdue = true;
+			timers.remove(g.getId());
+			listener.accept("\"" + g.getName() + "\" is overdue");
+		});
+		timers.put(g.getId(), goalTimers);
+	}
+
+	private void cancel(int goalId) {
+		TimingWheel.Timer[] goalTimers = timers.remove(goalId);
+		if (goalTimers == null) return;
+		for (TimingWheel.Timer timer : goalTimers) {
+			if (timer != null) timer.cancel();
+		}
+	}
+
+	private static boolean isOverdue(Goal g, long now) {
+		return g.hasDeadline() && !g.isCompleted() && g.getDeadline() <= now;
+	}
+}
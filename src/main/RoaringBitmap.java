@@ -0,0 +1,326 @@
+package main;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints. Values are split by their upper 16 bits into chunks;
+ * sparse chunks are kept as sorted arrays and dense ones as plain 65536-bit bitmaps.
+ */
+public class RoaringBitmap {
+	private static final int ARRAY_CONTAINER_MAX = 4096;
+
+	private char[] keys = new char[4];
+	private Container[] containers = new Container[4];
+	private int size;
+
+	public void add(int value) {
+		char high = high(value);
+		int i = indexOf(high);
+		if (i < 0) {
+			i = -i - 1;
+			insertContainer(i, high, new ArrayContainer());
+		}
+		containers[i] = containers[i].add(low(value));
+	}
+
+	public void remove(int value) {
+		int i = indexOf(high(value));
+		if (i < 0) return;
+		containers[i] = containers[i].remove(low(value));
+		if (containers[i].cardinality() == 0) removeContainer(i);
+	}
+
+	public boolean contains(int value) {
+		int i = indexOf(high(value));
+		return i >= 0 && containers[i].contains(low(value));
+	}
+
+	public int cardinality() {
+		int result = 0;
+		for (int i = 0; i < size; i++) result += containers[i].cardinality();
+		return result;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void forEach(IntConsumer consumer) {
+		for (int i = 0; i < size; i++) containers[i].forEach(keys[i] << 16, consumer);
+	}
+
+	public RoaringBitmap and(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0, j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) i++;
+			else if (keys[i] > other.keys[j]) j++;
+			else {
+				Container c = containers[i].and(other.containers[j]);
+				if (c.cardinality() != 0) result.appendContainer(keys[i], c);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	public RoaringBitmap or(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0, j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				result.appendContainer(keys[i], containers[i].copy());
+				i++;
+			} else if (i == size || keys[i] > other.keys[j]) {
+				result.appendContainer(other.keys[j], other.containers[j].copy());
+				j++;
+			} else {
+				result.appendContainer(keys[i], containers[i].or(other.containers[j]));
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	public RoaringBitmap andNot(RoaringBitmap other) {
+		RoaringBitmap result = new RoaringBitmap();
+		int i = 0, j = 0;
+		while (i < size) {
+			if (j == other.size || keys[i] < other.keys[j]) {
+				result.appendContainer(keys[i], containers[i].copy());
+				i++;
+			} else if (keys[i] > other.keys[j]) j++;
+			else {
+				Container c = containers[i].andNot(other.containers[j]);
+				if (c.cardinality() != 0) result.appendContainer(keys[i], c);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	public RoaringBitmap copy() {
+		RoaringBitmap result = new RoaringBitmap();
+		for (int i = 0; i < size; i++) result.appendContainer(keys[i], containers[i].copy());
+		return result;
+	}
+
+	private int indexOf(char high) {
+		return Arrays.binarySearch(keys, 0, size, high);
+	}
+
+	private void insertContainer(int index, char key, Container c) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			containers = Arrays.copyOf(containers, size * 2);
+		}
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(containers, index, containers, index + 1, size - index);
+		keys[index] = key;
+		containers[index] = c;
+		size++;
+	}
+
+	private void appendContainer(char key, Container c) {
+		insertContainer(size, key, c);
+	}
+
+	private void removeContainer(int index) {
+		System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+		System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+		size--;
+		containers[size] = null;
+	}
+
+	private static char high(int value) {
+		if (value < 0) throw new IllegalArgumentException("Negative value (" + value + ")");
+		return (char) (value >>> 16);
+	}
+
+	private static char low(int value) {
+		return (char) value;
+	}
+
+	private abstract static class Container {
+		abstract Container add(char value);
+
+		abstract Container remove(char value);
+
+		abstract boolean contains(char value);
+
+		abstract int cardinality();
+
+		abstract void forEach(int base, IntConsumer consumer);
+
+		abstract Container copy();
+
+		abstract BitmapContainer toBitmap();
+
+		Container and(Container other) {
+			if (this instanceof ArrayContainer a) return a.filter(other, true);
+			if (other instanceof ArrayContainer a) return a.filter(this, true);
+			return ((BitmapContainer) this).combine((BitmapContainer) other, 0).shrink();
+		}
+
+		Container or(Container other) {
+			return toBitmap().combine(other.toBitmap(), 1).shrink();
+		}
+
+		Container andNot(Container other) {
+			if (this instanceof ArrayContainer a) return a.filter(other, false);
+			return ((BitmapContainer) this).combine(other.toBitmap(), 2).shrink();
+		}
+	}
+
+	private static class ArrayContainer extends Container {
+		private char[] values = new char[4];
+		private int size;
+
+		@Override
+		Container add(char value) {
+			int i = Arrays.binarySearch(values, 0, size, value);
+			if (i >= 0) return this;
+			if (size == ARRAY_CONTAINER_MAX) {
+				BitmapContainer bitmap = toBitmap();
+				bitmap.add(value);
+				return bitmap;
+			}
+			i = -i - 1;
+			if (size == values.length) values = Arrays.copyOf(values, Math.min(size * 2, ARRAY_CONTAINER_MAX));
+			System.arraycopy(values, i, values, i + 1, size - i);
+			values[i] = value;
+			size++;
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			int i = Arrays.binarySearch(values, 0, size, value);
+			if (i < 0) return this;
+			System.arraycopy(values, i + 1, values, i, size - i - 1);
+			size--;
+			return this;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, size, value) >= 0;
+		}
+
+		@Override
+		int cardinality() {
+			return size;
+		}
+
+		@Override
+		void forEach(int base, IntConsumer consumer) {
+			for (int i = 0; i < size; i++) consumer.accept(base | values[i]);
+		}
+
+		@Override
+		Container copy() {
+			ArrayContainer result = new ArrayContainer();
+			result.values = Arrays.copyOf(values, Math.max(size, 4));
+			result.size = size;
+			return result;
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < size; i++) result.add(values[i]);
+			return result;
+		}
+
+		ArrayContainer filter(Container other, boolean keepContained) {
+			ArrayContainer result = new ArrayContainer();
+			result.values = new char[Math.max(size, 4)];
+			for (int i = 0; i < size; i++) {
+				if (other.contains(values[i]) == keepContained) result.values[result.size++] = values[i];
+			}
+			return result;
+		}
+	}
+
+	private static class BitmapContainer extends Container {
+		private final long[] words = new long[1024];
+		private int cardinality;
+
+		@Override
+		Container add(char value) {
+			long before = words[value >>> 6];
+			words[value >>> 6] |= 1L << value;
+			if (before != words[value >>> 6]) cardinality++;
+			return this;
+		}
+
+		@Override
+		Container remove(char value) {
+			long before = words[value >>> 6];
+			words[value >>> 6] &= ~(1L << value);
+			if (before != words[value >>> 6]) cardinality--;
+			return shrink();
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & (1L << value)) != 0;
+		}
+
+		@Override
+		int cardinality() {
+			return cardinality;
+		}
+
+		@Override
+		void forEach(int base, IntConsumer consumer) {
+			for (int w = 0; w < words.length; w++) {
+				long word = words[w];
+				while (word != 0) {
+					consumer.accept(base | (w << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+		}
+
+		@Override
+		Container copy() {
+			BitmapContainer result = new BitmapContainer();
+			System.arraycopy(words, 0, result.words, 0, words.length);
+			result.cardinality = cardinality;
+			return result;
+		}
+
+		@Override
+		BitmapContainer toBitmap() {
+			return this;
+		}
+
+		// operation: 0 - and, 1 - or, 2 - and not
+		BitmapContainer combine(BitmapContainer other, int operation) {
+			BitmapContainer result = new BitmapContainer();
+			for (int i = 0; i < words.length; i++) {
+				long w = switch (operation) {
+					case 0 -> words[i] & other.words[i];
+					case 1 -> words[i] | other.words[i];
+					default -> words[i] & ~other.words[i];
+				};
+				result.words[i] = w;
+				result.cardinality += Long.bitCount(w);
+			}
+			return result;
+		}
+
+		Container shrink() {
+			if (cardinality > ARRAY_CONTAINER_MAX) return this;
+			ArrayContainer result = new ArrayContainer();
+			result.values = new char[Math.max(cardinality, 4)];
+			forEach(0, v -> result.values[result.size++] = (char) v);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package main;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Randomized differential check of the goal placement and the goals file, run as
+ * {@code java main.SelfCheck [operations] [seed] [goals]}. It seeds a scratch directory with random goals
+ * ({@link #GOALS} by default) and applies a long random sequence of mutations to them through the regular
+ * API. After every operation it compares the display levels with a reference placement, and the name pool
+ * with the names of the goals. Every {@link #SAVE_INTERVAL} operations it saves and checks that goals.bin
+ * loads back to the same goals and is rewritten byte for byte. Operations slower on average than their
+ * budget also count as failures. Exits with 1 if anything failed.
+ */
+public class SelfCheck {
+	private static final int GOALS = 50_000, SAVE_INTERVAL = 500;
+	private static final long DAY = 86400_000;
+
+	private enum Operation {
+		ADD(40_000), REMOVE(40_000), COMPLETE(40_000), CANCEL_COMPLETION(40_000), SET_INITIATED(40_000),
+		RENAME(5_000), SET_TAGS(40_000), SET_DEADLINE(5_000), SAVE(500_000);
+
+		// mean time per operation with GOALS goals; grows linearly for more, as most operations place every goal
+		final long budgetMicros;
+
+		Operation(long budgetMicros) {
+			this.budgetMicros = budgetMicros;
+		}
+	}
+
+	private final Random random;
+	private final long now = System.currentTimeMillis();
+	private final Map<Operation, long[]> timings = new EnumMap<>(Operation.class); // count, total nanos
+	private final List<String> failures = new ArrayList<>();
+	private File goalsFile;
+
+	private SelfCheck(long seed) {
+		random = new Random(seed);
+	}
+
+	public static void main(String[] args) throws InterruptedException, InvocationTargetException, IOException {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		int goals = args.length > 2 ? Integer.parseInt(args[2]) : GOALS;
+		File directory = Files.createTempDirectory("goals-self-check").toFile();
+		System.setProperty("goals.directory", directory.getPath());
+		System.setProperty("goals.storage", "binary");
+		System.out.println("Seed " + seed + ", " + operations + " operations on " + goals + " goals in " + directory);
+
+		SelfCheck check = new SelfCheck(seed);
+		check.seed(new File(directory, "goals.bin"), goals);
+		// the journal delivers changes on the event dispatch thread, so the model is only touched there
+		SwingUtilities.invokeAndWait(() -> check.run(operations, goals, directory));
+		check.report();
+		System.exit(check.failures.isEmpty() ? 0 : 1);
+	}
+
+	/**
+	 * Writes the given number of random goals, so the operations run at scale from the start.
+	 */
+	private void seed(File goalsFile, int goals) {
+		BinaryGoalRepository repository = new BinaryGoalRepository(goalsFile);
+		for (int id = 0; id < goals; id++) {
+			long initiated = now - (long) (random.nextDouble() * 1000 * DAY);
+			Goal g = random.nextInt(10) == 0 ? new Goal(randomName(), initiated)
+					: new Goal(randomName(), initiated, Math.min(now, initiated + (long) (random.nextDouble() * 30 * DAY)));
+			g.id = id;
+			repository.put(g);
+		}
+		repository.flush();
+	}
+
+	private void run(int operations, int goals, File directory) {
+		AppData.init();
+		goalsFile = new File(directory, "goals.bin");
+		for (int i = 1; i <= operations && failures.size() < 10; i++) {
+			Operation operation = nextOperation();
+			try {
+				time(operation, () -> apply(operation));
+				checkPlacement();
+				checkNames();
+				if (i % SAVE_INTERVAL == 0 || i == operations) {
+					time(Operation.SAVE, AppData::save);
+					checkPersistence();
+				}
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				failures.add("Operation " + i + " (" + operation + ") threw " + e);
+			}
+		}
+		for (Operation operation : Operation.values()) {
+			long[] t = timings.get(operation);
+			if (t == null) continue;
+			long meanMicros = t[1] / t[0] / 1000;
+			long budgetMicros = operation.budgetMicros * Math.max(goals, GOALS) / GOALS;
+			if (meanMicros > budgetMicros)
+				failures.add(operation + " took " + meanMicros + " us on average, the budget is " + budgetMicros);
+		}
+	}
+
+	private Operation nextOperation() {
+		// adding and removing are equally likely, so the number of goals stays roughly the seeded one
+		return Operation.values()[random.nextInt(Operation.SAVE.ordinal())];
+	}
+
+	private void apply(Operation operation) {
+		List<Goal> goals = AppData.getGoals();
+		if (operation != Operation.ADD && goals.isEmpty()) return;
+		Goal g = operation == Operation.ADD ? null : goals.get(random.nextInt(goals.size()));
+		switch (operation) {
+			case ADD -> {
+				Goal added = new Goal(randomName(), now - (long) (random.nextDouble() * 1000 * DAY));
+				AppData.addGoal(added);
+			}
+			case REMOVE -> AppData.removeGoal(g);
+			case COMPLETE -> {
+				if (g.isCompleted()) return;
+				g.complete(g.getInitiated() + (long) (random.nextDouble() * (now - g.getInitiated())));
+			}
+			case CANCEL_COMPLETION -> {
+				if (g.isCompleted()) g.cancelCompletion();
+			}
+			case SET_INITIATED -> {
+				long latest = g.isCompleted() ? g.getCompleted() : now;
+				if (g.hasDeadline()) latest = Math.min(latest, g.getDeadline() - 1);
+				g.setInitiated(latest - (long) (random.nextDouble() * 300 * DAY));
+			}
+			case RENAME -> g.setName(randomName());
+			case SET_TAGS -> g.setTags(List.of("t" + random.nextInt(20), "t" + random.nextInt(20)));
+			case SET_DEADLINE -> {
+				if (g.hasDeadline()) g.clearDeadline();
+				else g.setDeadline(g.getInitiated() + 1 + (long) (random.nextDouble() * 100 * DAY));
+			}
+			default -> throw new IllegalArgumentException(operation.toString());
+		}
+	}
+
+	private String randomName() {
+		if (random.nextBoolean()) return "goal " + random.nextInt(50); // names shared by several goals
+		char[] name = new char[1 + random.nextInt(30)];
+		for (int i = 0; i < name.length; i++) name[i] = random.nextInt(8) == 0 ? '\u0436' : (char) ('a' + random.nextInt(26));
+		return new String(name);
+	}
+
+	private void time(Operation operation, Runnable action) {
+		long start = System.nanoTime();
+		action.run();
+		long[] t = timings.computeIfAbsent(operation, o -> new long[2]);
+		t[0]++;
+		t[1] += System.nanoTime() - start;
+	}
+
+	/**
+	 * Compares the levels with the greedy rule, applied with plain collections rather than the primitive heaps
+	 * of {@link AppData#place}: every goal takes the lowest level not taken by the earlier goals still open at
+	 * its initiation. Goals open at the same moment must not share a level.
+	 */
+	private void checkPlacement() {
+		List<Goal> goals = AppData.getShownGoals();
+		BitSet taken = new BitSet(); // levels of the earlier goals not completed by the current one's initiation
+		PriorityQueue<Goal> completing = new PriorityQueue<>(Comparator.comparingLong(Goal::getCompleted));
+		for (int i = 0; i < goals.size(); i++) {
+			Goal g = goals.get(i);
+			if (i > 0 && goals.get(i - 1).getInitiated() > g.getInitiated()) {
+				failures.add("Goals out of order at " + i);
+				return;
+			}
+			while (!completing.isEmpty() && completing.peek().getCompleted() <= g.getInitiated())
+				taken.clear(AppData.getDisplayLevel(completing.poll()));
+			int level = AppData.getDisplayLevel(g);
+			if (taken.get(level)) {
+				failures.add("Goal " + g.getId() + " shares level " + level + " with an overlapping one");
+				return;
+			}
+			if (level != taken.nextClearBit(0)) {
+				failures.add("Goal " + g.getId() + " is on level " + level + " instead of " + taken.nextClearBit(0));
+				return;
+			}
+			taken.set(level);
+			if (g.isCompleted()) completing.add(g);
+		}
+	}
+
+	/**
+	 * Checks that every goal shares the pooled instance of its name and that the pool counts exactly the goals.
+	 */
+	private void checkNames() {
+		NamePool names = AppData.getNames();
+		Map<Integer, Integer> references = new HashMap<>();
+		for (Goal g : AppData.getGoals()) {
+			if (g.getNameId() == -1 || names.get(g.getNameId()) != g.getName()) {
+				failures.add("Goal " + g.getId() + " doesn't share its pooled name");
+				return;
+			}
+			references.merge(g.getNameId(), 1, Integer::sum);
+		}
+		if (references.size() != names.size()) failures.add(names.size() + " names pooled, " + references.size() + " used");
+		references.forEach((id, count) -> {
+			if (names.getReferences(id) != count)
+				failures.add("Name " + id + " has " + names.getReferences(id) + " references instead of " + count);
+		});
+	}
+
+	private void checkPersistence() {
+		Map<Integer, Goal> loaded = new HashMap<>();
+		for (Goal g : new BinaryGoalRepository(goalsFile).loadAll()) loaded.put(g.getId(), g);
+		if (loaded.size() != AppData.getGoals().size())
+			failures.add(loaded.size() + " goals loaded, " + AppData.getGoals().size() + " saved");
+		for (Goal g : AppData.getGoals()) {
+			Goal l = loaded.get(g.getId());
+			if (l == null || !l.getName().equals(g.getName()) || l.getInitiated() != g.getInitiated()
+					|| l.isCompleted() != g.isCompleted() || l.getCompleted() != g.getCompleted()
+					|| !l.getTags().equals(g.getTags()) || l.getVersion() != g.getVersion()
+					|| l.hasDeadline() != g.hasDeadline() || l.getDeadline() != g.getDeadline()) {
+				failures.add("Goal " + g.getId() + " didn't survive saving and loading");
+				return;
+			}
+		}
+
+		try {
+			File copy = new File(goalsFile.getParentFile(), "goals-copy.bin");
+			Files.copy(goalsFile.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			BinaryGoalRepository repository = new BinaryGoalRepository(copy);
+			repository.loadAll().forEach(repository::put); // marks the repository modified
+			repository.flush();
+			if (!Arrays.equals(Files.readAllBytes(goalsFile.toPath()), Files.readAllBytes(copy.toPath())))
+				failures.add("Rewriting the loaded goals file changed it");
+		} catch (IOException e) {
+			throw new Error("Failed to copy the goals file", e);
+		}
+	}
+
+	private void report() {
+		for (Operation operation : Operation.values()) {
+			long[] t = timings.get(operation);
+			if (t != null) System.out.printf("%-18s %7d x %8.1f us%n", operation, t[0], t[1] / 1000.0 / t[0]);
+		}
+		if (failures.isEmpty()) System.out.println("OK");
+		else failures.forEach(f -> System.out.println("FAILED: " + f));
+	}
+}
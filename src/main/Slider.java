@@ -0,0 +1,53 @@
+package main;
+
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.util.function.DoubleConsumer;
+
+public class Slider {
+	private int x, y, width, height;
+	private double value = 1;
+	private boolean dragged;
+	private DoubleConsumer onChange;
+
+	public Slider(DoubleConsumer onChange) {
+		this.onChange = onChange;
+	}
+
+	public void setBounds(int x, int y, int width, int height) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	public void mousePressed(MouseEvent e) {
+		if (!new Rectangle(x, y, width, height).contains(e.getPoint())) return;
+		dragged = true;
+		mouseDragged(e);
+	}
+
+	public void mouseDragged(MouseEvent e) {
+		if (!dragged) return;
+		double newValue = Math.min(1, Math.max(0, (double) (e.getX() - x) / width));
+		if (newValue == value) return;
+		value = newValue;
+		onChange.accept(value);
+	}
+
+	public void mouseReleased(MouseEvent e) {
+		dragged = false;
+	}
+
+	public double getValue() {
+		return value;
+	}
+
+	public void paint(Graphics2D g) {
+		g.setColor(Color.darkGray);
+		g.fillRoundRect(x, y + height / 2 - 2, width, 4, 4, 4);
+		int knobX = x + (int) Math.round(value * width);
+		g.setColor(dragged ? Color.lightGray : Color.gray);
+		g.fillRoundRect(knobX - 5, y, 10, height, 5, 5);
+	}
+}
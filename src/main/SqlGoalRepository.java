@@ -0,0 +1,183 @@
+package main;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores goals in an embedded SQL database through JDBC. Only standard SQL is used, so any in-process
+ * database whose driver is on the classpath works (e.g. {@code jdbc:sqlite:...} or {@code jdbc:h2:...}).
+ * Every write is committed right away, so the database's write lock isn't held between changes and
+ * other instances can write to it as well. Lookups go through a connection of their own, so they don't
+ * wait for the writes and can come from other threads.
+ */
+public class SqlGoalRepository implements GoalRepository {
+	private static final String COLUMNS = "id, name, initiated, completed, tags, version, deadline";
+
+	private final Connection connection, lookups;
+	private final PreparedStatement selectAll, update, insert, delete;
+	private final PreparedStatement selectInRange, selectById; // of lookups, used while holding its lock
+
+	public SqlGoalRepository(String url) {
+		try {
+			connection = DriverManager.getConnection(url);
+			try (Statement s = connection.createStatement()) {
+				s.executeUpdate("CREATE TABLE IF NOT EXISTS goals (id INTEGER PRIMARY KEY, name VARCHAR(4096) NOT NULL,"
+						+ " initiated BIGINT NOT NULL, completed BIGINT, tags VARCHAR(4096) NOT NULL, version INTEGER NOT NULL,"
+						+ " deadline BIGINT)");
+				if (!hasColumn("version"))
+					s.executeUpdate("ALTER TABLE goals ADD COLUMN version INTEGER DEFAULT 0 NOT NULL");
+				if (!hasColumn("deadline")) s.executeUpdate("ALTER TABLE goals ADD COLUMN deadline BIGINT");
+				s.executeUpdate("CREATE INDEX IF NOT EXISTS goals_initiated ON goals (initiated, id)");
+				s.executeUpdate("CREATE INDEX IF NOT EXISTS goals_completed ON goals (completed)");
+			}
+			connection.setAutoCommit(false); // to make the update and the insert of put a single transaction
+			selectAll = connection.prepareStatement("SELECT " + COLUMNS + " FROM goals ORDER BY initiated");
+			update = connection.prepareStatement("UPDATE goals SET name = ?, initiated = ?, completed = ?, tags = ?, version = ?,"
+					+ " deadline = ? WHERE id = ?");
+			insert = connection.prepareStatement("INSERT INTO goals (name, initiated, completed, tags, version, deadline, id)"
+					+ " VALUES (?, ?, ?, ?, ?, ?, ?)");
+			delete = connection.prepareStatement("DELETE FROM goals WHERE id = ?");
+
+			lookups = DriverManager.getConnection(url);
+			// the page starts after the previous one's last goal in the order of the index on initiated
+			selectInRange = lookups.prepareStatement("SELECT " + COLUMNS + " FROM goals WHERE initiated <= ?"
+					+ " AND (completed IS NULL OR completed >= ?) AND (initiated > ? OR initiated = ? AND id > ?)"
+					+ " ORDER BY initiated, id");
+			selectById = lookups.prepareStatement("SELECT " + COLUMNS + " FROM goals WHERE id = ?");
+		} catch (SQLException e) {
+			throw new Error("Failed to open the goals database (" + url + ")", e);
+		}
+	}
+
+	@Override
+	public List<Goal> loadAll() {
+		try {
+			List<Goal> result = readGoals(selectAll);
+			connection.commit(); // ends the read transaction, which would hold off other instances' writes
+			return result;
+		} catch (SQLException e) {
+			throw new Error("Failed to read the goals", e);
+		}
+	}
+
+	@Override
+	public List<Goal> findInRange(long start, long end, Goal after, int limit) {
+		synchronized (lookups) {
+			try {
+				selectInRange.setLong(1, end);
+				selectInRange.setLong(2, start);
+				selectInRange.setLong(3, after == null ? Long.MIN_VALUE : after.getInitiated());
+				selectInRange.setLong(4, after == null ? Long.MIN_VALUE : after.getInitiated());
+				selectInRange.setInt(5, after == null ? Integer.MIN_VALUE : after.getId());
+				selectInRange.setMaxRows(limit);
+				return readGoals(selectInRange);
+			} catch (SQLException e) {
+				throw new Error("Failed to read the goals", e);
+			}
+		}
+	}
+
+	@Override
+	public Goal findById(int id) {
+		synchronized (lookups) {
+			try {
+				selectById.setInt(1, id);
+				List<Goal> result = readGoals(selectById);
+				return result.isEmpty() ? null : result.get(0);
+			} catch (SQLException e) {
+				throw new Error("Failed to read the goal " + id, e);
+			}
+		}
+	}
+
+	@Override
+	public void put(Goal g) {
+		try {
+			bindGoal(update, g);
+			if (update.executeUpdate() == 0) {
+				bindGoal(insert, g);
+				insert.executeUpdate();
+			}
+			connection.commit();
+		} catch (SQLException e) {
+			throw new Error("Failed to write the goal " + g.getId(), e);
+		}
+	}
+
+	@Override
+	public void delete(int id) {
+		try {
+			delete.setInt(1, id);
+			delete.executeUpdate();
+			connection.commit();
+		} catch (SQLException e) {
+			throw new Error("Failed to delete the goal " + id, e);
+		}
+	}
+
+	@Override
+	public void flush() {
+		// every write is already committed
+	}
+
+	@Override
+	public void close() {
+		try {
+			synchronized (lookups) {
+				lookups.close();
+			}
+			connection.close();
+		} catch (SQLException e) {
+			throw new Error("Failed to close the goals database", e);
+		}
+	}
+
+	private boolean hasColumn(String column) throws SQLException {
+		try (ResultSet rs = connection.getMetaData().getColumns(null, null, "%", "%")) {
+			while (rs.next()) {
+				if (rs.getString("TABLE_NAME").equalsIgnoreCase("goals")
+						&& rs.getString("COLUMN_NAME").equalsIgnoreCase(column)) return true;
+			}
+		}
+		return false;
+	}
+
+	private static void bindGoal(PreparedStatement statement, Goal g) throws SQLException {
+		statement.setString(1, g.getName());
+		statement.setLong(2, g.getInitiated());
+		if (g.isCompleted()) statement.setLong(3, g.getCompleted());
+		else statement.setNull(3, Types.BIGINT);
+		statement.setString(4, String.join(" ", g.getTags()));
+		statement.setInt(5, g.getVersion());
+		if (g.hasDeadline()) statement.setLong(6, g.getDeadline());
+		else statement.setNull(6, Types.BIGINT);
+		statement.setInt(7, g.getId());
+	}
+
+	private static List<Goal> readGoals(PreparedStatement statement) throws SQLException {
+		List<Goal> result = new ArrayList<>();
+		try (ResultSet rs = statement.executeQuery()) {
+			while (rs.next()) {
+				String name = rs.getString(2);
+				long initiated = rs.getLong(3);
+				long completed = rs.getLong(4);
+				Goal g = rs.wasNull() ? new Goal(name, initiated) : new Goal(name, initiated, completed);
+				String tags = rs.getString(5);
+				if (!tags.isEmpty()) g.tags = List.of(tags.split(" "));
+				g.deadline = rs.getLong(7);
+				g.hasDeadline = !rs.wasNull();
+				g.id = rs.getInt(1);
+				g.version = rs.getInt(6);
+				result.add(g);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,94 @@
+package main;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The snapshot.bin file: the visible range and the goals in it as of the last exit, with their lanes
+ * already assigned, so the first frame can be painted while the goals are still being loaded. It is only
+ * a cache, so failing to read or write it is not fatal.
+ */
+public class StartupSnapshot {
+	private static final int VERSION = 1;
+
+	public final double start, end;
+	public final List<Goal> goals;
+
+	private StartupSnapshot(double start, double end, List<Goal> goals) {
+		this.start = start;
+		this.end = end;
+		this.goals = goals;
+	}
+
+	/**
+	 * @return the snapshot, or null if there's none or it can't be read
+	 */
+	public static StartupSnapshot read(File file) {
+		if (!file.isFile()) return null;
+		try (DataInputStream input = new DataInputStream(new FileInputStream(file))) {
+			if (input.readInt() != VERSION) return null;
+			double start = input.readDouble(), end = input.readDouble();
+			int size = input.readInt();
+			List<Goal> goals = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				String name = input.readUTF();
+				long initiated = input.readLong();
+				Goal g = input.readBoolean() ? new Goal(name, initiated, input.readLong()) : new Goal(name, initiated);
+				if (input.readBoolean()) {
+					g.deadline = input.readLong();
+					g.hasDeadline = true;
+				}
+				g.overdue = input.readBoolean();
+				g.displayLevel = input.readInt();
+				goals.add(g);
+			}
+			return new StartupSnapshot(start, end, goals);
+		} catch (IOException | IllegalArgumentException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Saves the given range along with those of the shown goals that are visible in it.
+	 */
+	public static void write(File file, double start, double end, List<Goal> shownGoals) {
+		long now = System.currentTimeMillis();
+		List<Goal> visible = new ArrayList<>();
+		for (Goal g : shownGoals) {
+			if (g.getInitiated() <= end && (g.isCompleted() ? g.getCompleted() : now) >= start) visible.add(g);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream output = new DataOutputStream(bytes)) {
+			output.writeInt(VERSION);
+			output.writeDouble(start);
+			output.writeDouble(end);
+			output.writeInt(visible.size());
+			for (Goal g : visible) {
+				output.writeUTF(g.getName());
+				output.writeLong(g.getInitiated());
+				output.writeBoolean(g.isCompleted());
+				if (g.isCompleted()) output.writeLong(g.getCompleted());
+				output.writeBoolean(g.hasDeadline());
+				if (g.hasDeadline()) output.writeLong(g.getDeadline());
+				output.writeBoolean(g.isOverdue());
+				output.writeInt(AppData.getDisplayLevel(g));
+			}
+			// written next to the file and moved over it, so a crash doesn't leave half a snapshot behind
+			File temporary = new File(file.getPath() + ".tmp");
+			Files.write(temporary.toPath(), bytes.toByteArray());
+			Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
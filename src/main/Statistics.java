@@ -0,0 +1,214 @@
+package main;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Aggregates over the goals bucketed by day, kept up to date from {@link GoalEvent}s so that any
+ * [from, to] query costs O(log days) regardless of the number of goals.
+ */
+public class Statistics {
+	private static final long ORIGIN = LocalDate.of(1900, 1, 1).toEpochDay(); // the first day
+	private static final int DAYS = 110_000; // until about 2200
+
+	private long[] initiated = new long[16];
+	private long[] completed = new long[16];
+	private boolean[] exists = new boolean[16];
+	private boolean[] isCompleted = new boolean[16];
+
+	private final FenwickTree initiations, completions;
+	// Fenwick tree of sketches of time to completion, keyed by the completion day
+	private final QuantileSketch[] durations;
+	private final BitSet sharedDurations = new BitSet(); // sketches also referenced by a copy, cloned before changing
+	private final TreeSet<Integer> openGoals = new TreeSet<>(Comparator.<Integer>comparingLong(id -> initiated[id])
+			.thenComparingInt(id -> id));
+	private final ZoneRules zone = ZoneId.systemDefault().getRules();
+
+	private int modCount;
+
+	public Statistics() {
+		initiations = new FenwickTree(DAYS);
+		completions = new FenwickTree(DAYS);
+		durations = new QuantileSketch[DAYS + 1];
+	}
+
+	private Statistics(Statistics original) {
+		initiated = original.initiated.clone();
+		completed = original.completed.clone();
+		exists = original.exists.clone();
+		isCompleted = original.isCompleted.clone();
+		initiations = original.initiations.copy();
+		completions = original.completions.copy();
+		durations = original.durations.clone();
+		openGoals.addAll(original.openGoals);
+		modCount = original.modCount;
+	}
+
+	/**
+	 * @return an independent copy, e.g. for reading on another thread; the sketches are only cloned once
+	 * either of the two changes them
+	 */
+	public Statistics copy() {
+		Statistics copy = new Statistics(this);
+		sharedDurations.set(0, durations.length);
+		copy.sharedDurations.set(0, durations.length);
+		return copy;
+	}
+
+	public void load(List<Goal> goals) {
+		for (Goal g : goals) {
+			apply(GoalEvent.added(g));
+			if (g.isCompleted()) apply(GoalEvent.completed(g));
+		}
+	}
+
+	public void apply(GoalEvent e) {
+		int id = e.goalId;
+		if (id >= exists.length) grow(Math.max(id + 1, exists.length * 2));
+		switch (e.type) {
+			case ADDED -> {
+				exists[id] = true;
+				initiated[id] = e.value;
+				isCompleted[id] = false;
+				include(id);
+			}
+			case REMOVED -> {
+				exclude(id);
+				exists[id] = false;
+			}
+			case COMPLETED -> {
+				exclude(id);
+				completed[id] = e.value;
+				isCompleted[id] = true;
+				include(id);
+			}
+			case COMPLETION_CANCELLED -> {
+				exclude(id);
+				isCompleted[id] = false;
+				include(id);
+			}
+			case INITIATED_CHANGED -> {
+				exclude(id);
+				initiated[id] = e.value;
+				include(id);
+			}
+			default -> {
+				return;
+			}
+		}
+		modCount++;
+	}
+
+	/**
+	 * Incremented on every change affecting the aggregates; lets callers cache query results.
+	 */
+	public int getModCount() {
+		return modCount;
+	}
+
+	public long countInitiated(long from, long to) {
+		return initiations.rangeSum(day(from), day(to));
+	}
+
+	public long countCompleted(long from, long to) {
+		return completions.rangeSum(day(from), day(to));
+	}
+
+	/**
+	 * @return number of goals open at some point of the day of the given moment
+	 */
+	public long countOpen(long timestamp) {
+		int day = day(timestamp);
+		return initiations.prefixSum(day) - completions.prefixSum(day - 1);
+	}
+
+	/**
+	 * @return sketch of the times to completion of the goals completed within [from, to]
+	 */
+	public QuantileSketch completionTimes(long from, long to) {
+		QuantileSketch result = new QuantileSketch();
+		addPrefix(result, day(to), 1);
+		addPrefix(result, day(from) - 1, -1);
+		return result;
+	}
+
+	/**
+	 * @return number of consecutive days with completed goals, ending today (or yesterday, if today has none yet)
+	 */
+	public int currentStreak(long now) {
+		int day = day(now);
+		if (completions.rangeSum(day, day) == 0) day--;
+		int streak = 0;
+		while (day >= 0 && completions.rangeSum(day, day) > 0) {
+			streak++;
+			day--;
+		}
+		return streak;
+	}
+
+	/**
+	 * @return ids of up to {@code limit} open goals, longest open first
+	 */
+	public List<Integer> longestOpen(int limit) {
+		List<Integer> result = new ArrayList<>(limit);
+		for (int id : openGoals) {
+			if (result.size() == limit) break;
+			result.add(id);
+		}
+		return result;
+	}
+
+	private void include(int id) {
+		initiations.add(day(initiated[id]), 1);
+		if (isCompleted[id]) {
+			completions.add(day(completed[id]), 1);
+			addDuration(day(completed[id]), completed[id] - initiated[id], 1);
+		} else openGoals.add(id);
+	}
+
+	private void exclude(int id) {
+		if (!exists[id]) throw new Error("Statistics event for a missing goal " + id);
+		initiations.add(day(initiated[id]), -1);
+		if (isCompleted[id]) {
+			completions.add(day(completed[id]), -1);
+			addDuration(day(completed[id]), completed[id] - initiated[id], -1);
+		} else openGoals.remove(id);
+	}
+
+	private void addDuration(int day, long duration, int delta) {
+		for (int i = day + 1; i < durations.length; i += i & -i) {
+			if (durations[i] == null) durations[i] = new QuantileSketch();
+			else if (sharedDurations.get(i)) durations[i] = durations[i].copy();
+			sharedDurations.clear(i);
+			durations[i].add(duration, delta);
+		}
+	}
+
+	private void addPrefix(QuantileSketch result, int day, int sign) {
+		for (int i = Math.min(day + 1, DAYS); i > 0; i -= i & -i) {
+			if (durations[i] != null) result.merge(durations[i], sign);
+		}
+	}
+
+	private int day(long timestamp) {
+		// the offset of the moment itself, so days follow daylight saving time
+		long seconds = Math.floorDiv(timestamp, 1000) + zone.getOffset(Instant.ofEpochMilli(timestamp)).getTotalSeconds();
+		long day = Math.floorDiv(seconds, 86400) - ORIGIN;
+		return (int) Math.min(DAYS - 1, Math.max(0, day));
+	}
+
+	private void grow(int size) {
+		initiated = Arrays.copyOf(initiated, size);
+		completed = Arrays.copyOf(completed, size);
+		exists = Arrays.copyOf(exists, size);
+		isCompleted = Arrays.copyOf(isCompleted, size);
+	}
+}
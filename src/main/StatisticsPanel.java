@@ -0,0 +1,62 @@
+package main;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class StatisticsPanel {
+	private static final long WEEK = 604800_000, MONTH = 2629756_800L;
+
+	private int x, y;
+	private long cachedFrom, cachedTo;
+	private int cachedModCount = -1;
+	private long cachedAt;
+	private List<String> lines = List.of();
+
+	public void setLocation(int x, int y) {
+		this.x = x;
+		this.y = y;
+	}
+
+	public void paint(Graphics2D g, long from, long to) {
+		Statistics statistics = AppData.getStatistics();
+		long now = System.currentTimeMillis();
+		// durations of open goals keep growing, so refresh at least every second
+		if (from != cachedFrom || to != cachedTo || statistics.getModCount() != cachedModCount || now - cachedAt > 1000) {
+			lines = describe(statistics, from, to);
+			cachedAt = now;
+			cachedFrom = from;
+			cachedTo = to;
+			cachedModCount = statistics.getModCount();
+		}
+
+		g.setColor(Color.gray);
+		g.setFont(g.getFont().deriveFont(18f));
+		int lineHeight = g.getFontMetrics().getHeight();
+		for (int i = 0; i < lines.size(); i++) g.drawString(lines.get(i), x, y + lineHeight * (i + 1));
+	}
+
+	private static List<String> describe(Statistics statistics, long from, long to) {
+		List<String> result = new ArrayList<>();
+		long completed = statistics.countCompleted(from, to);
+		double range = Math.max(to - from, 1);
+		result.add(String.format("In view: %d started, %d completed (%.1f per week, %.1f per month)",
+				statistics.countInitiated(from, to), completed, completed * WEEK / range, completed * MONTH / range));
+
+		QuantileSketch times = statistics.completionTimes(from, to);
+		if (times.getCount() > 0) result.add("Time to completion: median " + Timeline.msToUnitName(times.quantile(0.5))
+				+ ", p90 " + Timeline.msToUnitName(times.quantile(0.9)));
+
+		result.add("Current streak: " + statistics.currentStreak(System.currentTimeMillis()) + " days");
+
+		StringBuilder longestOpen = new StringBuilder();
+		for (int id : statistics.longestOpen(3)) {
+			Goal goal = AppData.getGoal(id);
+			if (longestOpen.length() != 0) longestOpen.append(", ");
+			longestOpen.append(goal.getName()).append(" (")
+					.append(Timeline.msToUnitName(Math.max(0, System.currentTimeMillis() - goal.getInitiated()))).append(")");
+		}
+		if (longestOpen.length() != 0) result.add("Longest open: " + longestOpen);
+		return result;
+	}
+}
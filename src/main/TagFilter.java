@@ -0,0 +1,72 @@
+package main;
+
+/**
+ * Parses expressions like {@code work & !(health | learning)} and evaluates them as bitmap operations
+ * over a {@link TagIndex}. {@code !} binds tighter than {@code &}, which binds tighter than {@code |}.
+ */
+public class TagFilter {
+	private final String expression;
+	private final TagIndex index;
+	private int position;
+
+	private TagFilter(String expression, TagIndex index) {
+		this.expression = expression;
+		this.index = index;
+	}
+
+	public static RoaringBitmap evaluate(String expression, TagIndex index) {
+		TagFilter f = new TagFilter(expression, index);
+		RoaringBitmap result = f.parseOr();
+		f.skipSpaces();
+		if (f.position != expression.length())
+			throw new IllegalArgumentException("Unexpected '" + expression.charAt(f.position) + "' at " + f.position);
+		return result;
+	}
+
+	private RoaringBitmap parseOr() {
+		RoaringBitmap result = parseAnd();
+		while (consume('|')) result = result.or(parseAnd());
+		return result;
+	}
+
+	private RoaringBitmap parseAnd() {
+		RoaringBitmap result = parseNot();
+		while (consume('&')) result = result.and(parseNot());
+		return result;
+	}
+
+	private RoaringBitmap parseNot() {
+		if (consume('!')) return index.getAll().andNot(parseNot());
+		if (consume('(')) {
+			RoaringBitmap result = parseOr();
+			if (!consume(')')) throw new IllegalArgumentException("Missing ')' at " + position);
+			return result;
+		}
+		return index.get(parseTag());
+	}
+
+	private String parseTag() {
+		skipSpaces();
+		int start = position;
+		while (position < expression.length() && isTagChar(expression.charAt(position))) position++;
+		if (start == position) throw new IllegalArgumentException("Expected a tag at " + start);
+		return expression.substring(start, position);
+	}
+
+	private boolean consume(char c) {
+		skipSpaces();
+		if (position < expression.length() && expression.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void skipSpaces() {
+		while (position < expression.length() && Character.isWhitespace(expression.charAt(position))) position++;
+	}
+
+	public static boolean isTagChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+	}
+}
@@ -0,0 +1,52 @@
+package main;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class TagIndex {
+	private final Map<String, RoaringBitmap> byTag = new HashMap<>();
+	private final RoaringBitmap all = new RoaringBitmap();
+
+	public void add(Goal g) {
+		all.add(g.getId());
+		addTags(g.getId(), g.getTags());
+	}
+
+	public void remove(Goal g) {
+		all.remove(g.getId());
+		removeTags(g.getId(), g.getTags());
+	}
+
+	public void retag(Goal g, List<String> oldTags) {
+		removeTags(g.getId(), oldTags);
+		addTags(g.getId(), g.getTags());
+	}
+
+	public RoaringBitmap get(String tag) {
+		RoaringBitmap bitmap = byTag.get(tag);
+		return bitmap == null ? new RoaringBitmap() : bitmap;
+	}
+
+	public RoaringBitmap getAll() {
+		return all;
+	}
+
+	public Set<String> getTags() {
+		return byTag.keySet();
+	}
+
+	private void addTags(int id, List<String> tags) {
+		for (String tag : tags) byTag.computeIfAbsent(tag, t -> new RoaringBitmap()).add(id);
+	}
+
+	private void removeTags(int id, List<String> tags) {
+		for (String tag : tags) {
+			RoaringBitmap bitmap = byTag.get(tag);
+			if (bitmap == null) continue;
+			bitmap.remove(id);
+			if (bitmap.isEmpty()) byTag.remove(tag);
+		}
+	}
+}
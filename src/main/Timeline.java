@@ -3,12 +3,18 @@ package main;
 import java.awt.*;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
 public class Timeline {
 	private static final int GOAL_STRIP_THICKNESS = 20, GOAL_STRIPS_GAP = 5;
+	private static final Color BACKGROUND = new Color(21, 21, 21);
+	private static final Color DEADLINE_COLOR = new Color(200, 60, 60);
 
 	private static final List<TimelineMarkingsLevel> LEVELS = List.of(TimelineMarkingsLevel.seconds,
 			TimelineMarkingsLevel.minutes, TimelineMarkingsLevel.hourQuarters, TimelineMarkingsLevel.hours,
@@ -24,15 +30,26 @@ public class Timeline {
 	private final SimpleDateFormat detailsFormat = new SimpleDateFormat("MMM d");
 
 	private int x, y, width, height, timelineY;
-	private double startTimestamp, endTimestamp;
+	private double startTimestamp, endTimestamp; // where the view is heading
 	private double startTimestampPrev, endTimestampPrev, timestampChangeTimestamp;
 	private boolean zoomAnimationFinished = true;
+	// the view of the current frame, see updateView
+	private long frameTime;
+	private double viewStart, viewEnd, pixelsPerMs;
 	private int mainLevel;
+	private double levelFade; // how close the level below the main one is to replacing it, 0 to 1
 	private double mouseTimestamp;
 	private Goal hoveredGoal;
 	private String hoveredGoalInfo;
+	private HoveredGoalInfoKey hoveredGoalInfoKey; // everything hoveredGoalInfo was built from
+	private int pointerX, pointerY;
+	private boolean hasPointer;
+	private double pendingWheelRotation;
 	private Consumer<Long> clickListener;
 	private Consumer<Goal> goalClickListener;
+	private List<Goal> historicGoals; // null when showing the live goals
+	private List<Goal> previewGoals; // goals of the startup snapshot, until the live ones are loaded
+	private long historicTimestamp;
 
 	public Timeline() {
 		long time = System.currentTimeMillis();
@@ -40,23 +57,30 @@ public class Timeline {
 		startTimestamp = time - range / 2d;
 		endTimestamp = time + range / 2d;
 		mouseTimestamp = time;
+		updateView(time);
 	}
 
 	public void paint(Graphics2D g) {
-		double start = start(), end = end();
+		updateView(System.currentTimeMillis());
+		processInput();
 
 		g.translate(x, y);
-		g.setColor(new Color(21, 21, 21));
+		g.setColor(BACKGROUND);
 		g.fillRect(0, 0, width, height);
 		g.setColor(Color.lightGray);
 
-		paintTimeline(g, start, end);
+		paintTimeline(g, viewStart, viewEnd);
 		paintTimelinePointers(g);
 		paintGoals(g);
 
 		g.setColor(Color.darkGray);
 		g.drawString(pointerFormat.format(mouseTimestamp), 10, timelineY + 40);
 
+		if (historicGoals != null) {
+			g.setColor(Color.gray);
+			g.drawString("As of " + pointerFormat.format(historicTimestamp), 10, 30);
+		}
+
 		if (hoveredGoalInfo != null) {
 			g.setColor(Color.gray);
 			g.drawString(hoveredGoalInfo, width - g.getFontMetrics().stringWidth(hoveredGoalInfo) - 20, timelineY + 40);
@@ -65,27 +89,155 @@ public class Timeline {
 		g.translate(-x, -y);
 	}
 
-	private void paintTimeline(Graphics2D g, double start, double end) {
-		if (!zoomAnimationFinished) mainLevel = suitableMainMarkingsLevel();
+	/**
+	 * Paints the markings and goals within [fromX, toX) without the pointers and captions. Nothing is
+	 * modified while painting, so several threads can paint different parts of an {@link #exportCopy}.
+	 */
+	void paintContent(Graphics2D g, int fromX, int toX) {
+		g.setColor(BACKGROUND);
+		g.fillRect(fromX, 0, toX - fromX, height);
+		g.setColor(Color.lightGray);
+		// start a label's width earlier, so that labels crossing into the region are painted too
+		paintTimeline(g, xToUnix(fromX - minPixelsBetweenNamedMarkings), xToUnix(toX));
+		long from = xToUnix(fromX - 10), to = xToUnix(toX + 10);
+		for (Goal goal : displayedGoals()) {
+			long goalEnd = goal.isCompleted() ? goal.getCompleted() : now();
+			if (goal.getInitiated() <= to && goalEnd >= from) paintGoal(g, goal);
+		}
+	}
+
+	/**
+	 * Writes the markings and goals as SVG shapes, laid out like {@link #paintContent} would paint them.
+	 */
+	void writeSvg(Appendable out, Font font) throws IOException {
+		FontMetrics labels = getFontMetrics(font.deriveFont(20f)), titles = getFontMetrics(font.deriveFont(18f));
+		out.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(String.valueOf(width))
+				.append("\" height=\"").append(String.valueOf(height)).append("\" font-family=\"")
+				.append(escapeXml(font.getName())).append("\">\n");
+		out.append(String.format("<rect width=\"%d\" height=\"%d\" fill=\"%s\"/>%n", width, height, svgColor(BACKGROUND)));
+		String markingColor = svgColor(Color.lightGray);
+		out.append(String.format("<g stroke=\"%s\"><line x1=\"0\" y1=\"%d\" x2=\"%d\" y2=\"%d\"/>%n",
+				markingColor, timelineY, width, timelineY));
+		List<String> texts = new ArrayList<>();
+		String mainLabelOpacity = svgOpacity(1 - levelFade), fadingOpacity = svgOpacity(levelFade);
+		LEVELS.get(mainLevel).listMarkings((long) viewStart, (long) viewEnd, (t, name) -> {
+			int x = unixToX(t);
+			append(out, String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\"/>%n", x, timelineY - 10, x, timelineY));
+			texts.add(String.format("<text x=\"%d\" y=\"%d\"%s>%s</text>%n", x + 5, timelineY - 5, mainLabelOpacity,
+					escapeXml(name)));
+		});
+		if (mainLevel != 0) {
+			LEVELS.get(mainLevel - 1).listMarkings((long) viewStart, (long) viewEnd, (t, name) -> {
+				int x = unixToX(t);
+				append(out, String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\"/>%n", x, timelineY + 5, x, timelineY));
+				if (levelFade == 0) return;
+				append(out, String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\"%s/>%n", x, timelineY - 10, x,
+						timelineY, fadingOpacity));
+				texts.add(String.format("<text x=\"%d\" y=\"%d\"%s>%s</text>%n", x + 5, timelineY - 5, fadingOpacity,
+						escapeXml(name)));
+			});
+		}
+		if (mainLevel > 1 && levelFade != 0) {
+			LEVELS.get(mainLevel - 2).listMarkings((long) viewStart, (long) viewEnd, (t, name) -> {
+				int x = unixToX(t);
+				append(out, String.format("<line x1=\"%d\" y1=\"%d\" x2=\"%d\" y2=\"%d\"%s/>%n", x, timelineY + 5, x,
+						timelineY, fadingOpacity));
+			});
+		}
+		out.append("</g>\n");
+		out.append(String.format("<g font-size=\"%d\" fill=\"%s\">%n", labels.getFont().getSize(), markingColor));
+		for (String text : texts) out.append(text);
+		out.append("</g>\n");
+
+		out.append("<g font-size=\"").append(String.valueOf(titles.getFont().getSize())).append("\">\n");
+		for (Goal goal : displayedGoals()) {
+			if (isGoalOutsideBounds(goal)) continue;
+			Rectangle b = goalBounds(goal);
+			Color color = goalColor(goal, false);
+			out.append(String.format("<rect x=\"%d\" y=\"%d\" width=\"%d\" height=\"%d\" rx=\"2.5\" fill=\"%s\"/>%n",
+					b.x, b.y, b.width, b.height, svgColor(color)));
+			String title = goal.getName() + (goal.isCompleted() ? "" : "   " + msToUnitName(now() - goal.getInitiated()));
+			int stringWidth = titles.stringWidth(title);
+			if (stringWidth < (b.width - 10)) {
+				out.append(String.format("<text x=\"%d\" y=\"%d\">%s</text>%n", b.x + (b.width - stringWidth) / 2,
+						b.y + GOAL_STRIP_THICKNESS / 2 + (titles.getAscent() - titles.getDescent()) / 2, escapeXml(title)));
+			}
+		}
+		out.append("</g>\n</svg>\n");
+	}
+
+	private static void append(Appendable out, String s) {
+		try {
+			out.append(s);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static FontMetrics getFontMetrics(Font font) {
+		Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+		FontMetrics result = g.getFontMetrics(font);
+		g.dispose();
+		return result;
+	}
+
+	private static String svgOpacity(double opacity) {
+		return opacity >= 1 ? "" : String.format(" opacity=\"%.2f\"", opacity);
+	}
+
+	private static String svgColor(Color c) {
+		return String.format("#%02x%02x%02x", c.getRed(), c.getGreen(), c.getBlue());
+	}
 
+	private static String escapeXml(String s) {
+		return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+	}
+
+	/**
+	 * Paints the markings of the main level with labels and the ones of the level below as short ticks. As the
+	 * level below gets dense enough to become the main one, its labels fade in over the main level's, and the
+	 * ticks of the level below it fade in, so that zooming doesn't switch between levels abruptly.
+	 */
+	private void paintTimeline(Graphics2D g, double start, double end) {
+		Color color = g.getColor();
+		Color mainLabelColor = withAlpha(color, 1 - levelFade), fadingColor = withAlpha(color, levelFade);
 		g.drawLine(0, timelineY, width, timelineY);
 
 		g.setFont(g.getFont().deriveFont(20f));
 		LEVELS.get(mainLevel).listMarkings((long) start, (long) end, (t, name) -> {
 			int x = unixToX(t);
+			g.setColor(color);
 			g.drawLine(x, timelineY - 10, x, timelineY);
+			g.setColor(mainLabelColor);
 			g.drawString(name, x + 5, timelineY - 5);
 		});
 		if (mainLevel != 0) {
 			LEVELS.get(mainLevel - 1).listMarkings((long) start, (long) end, (t, name) -> {
+				int x = unixToX(t);
+				g.setColor(color);
+				g.drawLine(x, timelineY + 5, x, timelineY);
+				if (levelFade == 0) return;
+				g.setColor(fadingColor);
+				g.drawLine(x, timelineY - 10, x, timelineY);
+				g.drawString(name, x + 5, timelineY - 5);
+			});
+		}
+		if (mainLevel > 1 && levelFade != 0) {
+			g.setColor(fadingColor);
+			LEVELS.get(mainLevel - 2).listMarkings((long) start, (long) end, (t, name) -> {
 				int x = unixToX(t);
 				g.drawLine(x, timelineY + 5, x, timelineY);
 			});
 		}
+		g.setColor(color);
+	}
+
+	private static Color withAlpha(Color c, double alpha) {
+		return new Color(c.getRed(), c.getGreen(), c.getBlue(), (int) Math.round(255 * alpha));
 	}
 
 	private void paintTimelinePointers(Graphics g) {
-		int currentTimeX = unixToX(System.currentTimeMillis());
+		int currentTimeX = unixToX(now());
 		g.fillPolygon(new int[]{currentTimeX, currentTimeX - 5, currentTimeX + 5},
 				new int[]{timelineY + 5, timelineY + 15, timelineY + 15}, 3);
 		int mouseX = unixToX(mouseTimestamp);
@@ -94,7 +246,14 @@ public class Timeline {
 	}
 
 	private void paintGoals(Graphics2D g) {
-		AppData.getGoals().forEach(goal -> paintGoal(g, goal));
+		displayedGoals().forEach(goal -> paintGoal(g, goal));
+	}
+
+	private static Color goalColor(Goal goal, boolean hovered) {
+		Color color;
+		if (goal.isOverdue() && !goal.isCompleted()) color = hovered ? new Color(225, 150, 150) : new Color(210, 130, 130);
+		else color = hovered ? new Color(205, 205, 205) : Color.lightGray;
+		return goal.isCompleted() ? color.darker() : color;
 	}
 
 	private void paintGoal(Graphics2D g, Goal goal) {
@@ -103,12 +262,15 @@ public class Timeline {
 
 		g.setFont(g.getFont().deriveFont(18f));
 		FontMetrics fm = g.getFontMetrics();
-		Color bgColor = goal == hoveredGoal ? new Color(205, 205, 205) : Color.lightGray;
-		if (goal.isCompleted()) bgColor = bgColor.darker();
-		g.setColor(bgColor);
+		g.setColor(goalColor(goal, goal == hoveredGoal));
 
 		g.fillRoundRect(b.x, b.y, b.width, b.height, 5, 5);
-		String title = goal.getName() + (goal.isCompleted() ? "" : "   " + msToUnitName(System.currentTimeMillis() - goal.getInitiated()));
+		if (goal.hasDeadline() && !goal.isCompleted()) {
+			g.setColor(DEADLINE_COLOR);
+			int deadlineX = unixToX(goal.getDeadline());
+			g.fillRect(deadlineX - 1, b.y - 3, 3, GOAL_STRIP_THICKNESS + 6);
+		}
+		String title = goal.getName() + (goal.isCompleted() ? "" : "   " + msToUnitName(now() - goal.getInitiated()));
 		int stringWidth = fm.stringWidth(title);
 		if (stringWidth < (b.width - 10)) {
 			g.setColor(Color.black);
@@ -118,6 +280,7 @@ public class Timeline {
 	}
 
 	public void mousePressed(MouseEvent e) {
+		if (historicGoals != null || previewGoals != null) return; // past states and previews are read-only
 		if (goalClickListener != null) {
 			Goal g = getGoalAt(e.getX() - x, e.getY() - y);
 			if (g != null) {
@@ -131,54 +294,170 @@ public class Timeline {
 		}
 	}
 
+	/**
+	 * Only remembers the cursor; hover is resolved once per frame in {@link #processInput()}.
+	 */
 	public void mouseMoved(MouseEvent e) {
-		mouseTimestamp = xToUnix(e.getX() - x);
-		hoveredGoal = getGoalAt(e.getX() - x, e.getY() - y);
-		if (hoveredGoal != null) {
-			StringBuilder sb = new StringBuilder();
-
-			if (hoveredGoal.isCompleted()) {
-				sb.append(detailsFormat.format(hoveredGoal.getInitiated()));
-				sb.append(" to ");
-				sb.append(detailsFormat.format(hoveredGoal.getCompleted()));
-
-				sb.append(" (");
-				sb.append(msToUnitName(hoveredGoal.getCompleted() - hoveredGoal.getInitiated()));
-				sb.append(")");
-			} else {
-				sb.append("Initiated ");
-				sb.append(msToUnitName(System.currentTimeMillis() - hoveredGoal.getInitiated()));
-				sb.append(" ago (on ");
-				sb.append(detailsFormat.format(hoveredGoal.getInitiated()));
-				sb.append(")");
-			}
-			sb.append("     ");
-			sb.append(hoveredGoal.getName());
-
-			hoveredGoalInfo = sb.toString();
-		} else hoveredGoalInfo = null;
+		pointerX = e.getX() - x;
+		pointerY = e.getY() - y;
+		hasPointer = true;
 	}
 
+	/**
+	 * Accumulates the rotation; all the wheel events of a frame are applied as a single zoom step.
+	 */
 	public void mouseWheelMoved(MouseWheelEvent e) {
-		mouseTimestamp = xToUnix(e.getX() - x);
-		double xFraction = (double) (e.getX() - x) / width;
-		long mouseUnix = xToUnix(e.getX() - x);
-		double initialRange = end() - start();
-		double newRange = initialRange * Math.exp(e.getPreciseWheelRotation() * zoomSpeed);
+		mouseMoved(e);
+		pendingWheelRotation += e.getPreciseWheelRotation();
+	}
+
+	private void processInput() {
+		if (!hasPointer) return;
+		if (pendingWheelRotation != 0) {
+			zoom(pointerX, pendingWheelRotation);
+			pendingWheelRotation = 0;
+		}
+		mouseTimestamp = xToUnix(pointerX);
+		hoveredGoal = getGoalAt(pointerX, pointerY);
+		updateHoveredGoalInfo();
+	}
+
+	private void zoom(int xWithin, double wheelRotation) {
+		double xFraction = (double) xWithin / width;
+		long mouseUnix = xToUnix(xWithin);
+		double initialRange = viewEnd - viewStart;
+		double newRange = initialRange * Math.exp(wheelRotation * zoomSpeed);
 		newRange = Math.min(maxRange, Math.max(minRange, newRange));
 		double newStart = mouseUnix - newRange * xFraction;
 		double newEnd = mouseUnix + newRange * (1 - xFraction);
-		mainLevel = suitableMainMarkingsLevel();
 		setTimestamps(newStart, newEnd);
 	}
 
+	private void updateHoveredGoalInfo() {
+		if (hoveredGoal == null) {
+			hoveredGoalInfoKey = null;
+			hoveredGoalInfo = null;
+			return;
+		}
+		Goal goal = hoveredGoal;
+		long duration = (goal.isCompleted() ? goal.getCompleted() : now()) - goal.getInitiated();
+		HoveredGoalInfoKey key = new HoveredGoalInfoKey(goal, goal.getName(), goal.getInitiated(),
+				goal.isCompleted(), goal.getCompleted(), msToUnitName(duration));
+		if (key.equals(hoveredGoalInfoKey)) return;
+		hoveredGoalInfoKey = key;
+
+		StringBuilder sb = new StringBuilder();
+		if (goal.isCompleted()) {
+			sb.append(detailsFormat.format(goal.getInitiated()));
+			sb.append(" to ");
+			sb.append(detailsFormat.format(goal.getCompleted()));
+
+			sb.append(" (");
+			sb.append(key.duration());
+			sb.append(")");
+		} else {
+			sb.append("Initiated ");
+			sb.append(key.duration());
+			sb.append(" ago (on ");
+			sb.append(detailsFormat.format(goal.getInitiated()));
+			sb.append(")");
+		}
+		sb.append("     ");
+		sb.append(goal.getName());
+
+		hoveredGoalInfo = sb.toString();
+	}
+
 	public void setBounds(int x, int y, int width, int height) {
 		this.x = x;
 		this.y = y;
 		this.width = width;
 		this.height = height;
 		timelineY = height - 50;
-		mainLevel = suitableMainMarkingsLevel();
+		updateView(frameTime);
+	}
+
+	/**
+	 * Shows the given goals as of a past moment instead of the live ones; null returns to the live view.
+	 */
+	public void setHistoricView(List<Goal> goals, long timestamp) {
+		historicGoals = goals;
+		historicTimestamp = timestamp;
+		hoveredGoal = null;
+		hoveredGoalInfo = null;
+		hoveredGoalInfoKey = null;
+	}
+
+	/**
+	 * Shows the goals and range of the snapshot (or no goals, if it's null) until {@link #endPreview()}.
+	 */
+	public void setPreview(StartupSnapshot snapshot) {
+		previewGoals = snapshot == null ? List.of() : snapshot.goals;
+		if (snapshot != null) {
+			startTimestamp = snapshot.start;
+			endTimestamp = snapshot.end;
+			updateView(frameTime);
+		}
+	}
+
+	public void endPreview() {
+		previewGoals = null;
+		hoveredGoal = null;
+		hoveredGoalInfo = null;
+		hoveredGoalInfoKey = null;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public long getVisibleStart() {
+		return (long) viewStart;
+	}
+
+	public long getVisibleEnd() {
+		return (long) viewEnd;
+	}
+
+	/**
+	 * @return whether a zoom is being animated, in which case frames should come as often as the display allows
+	 */
+	public boolean isAnimating() {
+		return !zoomAnimationFinished;
+	}
+
+	/**
+	 * Creates a timeline of the given size showing the same goals over the given range, for rendering off
+	 * screen. The goals are copied, so the copy can be painted from other threads.
+	 */
+	Timeline exportCopy(int width, int height, double start, double end) {
+		List<Goal> goals = new ArrayList<>(displayedGoals().size());
+		for (Goal goal : displayedGoals()) {
+			Goal copy = goal.copy();
+			copy.displayLevel = displayLevel(goal);
+			goals.add(copy);
+		}
+		Timeline copy = new Timeline();
+		copy.setHistoricView(goals, now());
+		copy.startTimestamp = start;
+		copy.endTimestamp = end;
+		copy.setBounds(0, 0, width, height);
+		return copy;
+	}
+
+	/**
+	 * Jumps to the given range without the zoom animation, keeping the zoom level.
+	 */
+	public void moveTo(double start) {
+		double range = viewEnd - viewStart;
+		startTimestamp = start;
+		endTimestamp = start + range;
+		zoomAnimationFinished = true;
+		updateView(frameTime);
 	}
 
 	public void setClickListener(Consumer<Long> listener) {
@@ -190,39 +469,34 @@ public class Timeline {
 	}
 
 	private long xToUnix(int xWithin) {
-		double start = start();
-		double range = end() - start;
-		double fraction = (double) xWithin / width;
-		return (long) (start + (fraction * range));
+		return (long) (viewStart + xWithin / pixelsPerMs);
 	}
 
 	private int unixToX(double unix) {
-		double start = start();
-		double fraction = (unix - start) / (end() - start);
-		return (int) Math.round(width * fraction);
+		return (int) Math.round((unix - viewStart) * pixelsPerMs);
 	}
 
 	private boolean isGoalOutsideBounds(Goal g) {
 		// the goal started after the end of range
-		if (g.getInitiated() > end()) return true;
+		if (g.getInitiated() > viewEnd) return true;
 
 		// the goal ended before the start of range
-		long goalEnd = g.isCompleted() ? g.getCompleted() : System.currentTimeMillis();
-		return goalEnd < start();
+		long goalEnd = g.isCompleted() ? g.getCompleted() : now();
+		return goalEnd < viewStart;
 	}
 
 	private Rectangle goalBounds(Goal g) {
 		int startX = unixToX(g.getInitiated());
-		int endX = unixToX(g.isCompleted() ? g.getCompleted() : System.currentTimeMillis());
+		int endX = unixToX(g.isCompleted() ? g.getCompleted() : now());
 		startX = Math.max(startX, -10);
 		endX = Math.min(endX, width + 10);
-		int top = timelineY - GOAL_STRIP_THICKNESS - 30 - g.displayLevel * (GOAL_STRIP_THICKNESS + GOAL_STRIPS_GAP);
+		int top = timelineY - GOAL_STRIP_THICKNESS - 30 - displayLevel(g) * (GOAL_STRIP_THICKNESS + GOAL_STRIPS_GAP);
 
 		return new Rectangle(startX, top, endX - startX, GOAL_STRIP_THICKNESS);
 	}
 
 	private Goal getGoalAt(int xWithin, int yWithin) {
-		for (Goal g : AppData.getGoals()) {
+		for (Goal g : displayedGoals()) {
 			if (isGoalOutsideBounds(g)) continue;
 			Rectangle bounds = goalBounds(g);
 			if (bounds.contains(xWithin, yWithin)) {
@@ -232,54 +506,71 @@ public class Timeline {
 		return null;
 	}
 
+	private List<Goal> displayedGoals() {
+		if (previewGoals != null) return previewGoals;
+		return historicGoals == null ? AppData.getShownGoals() : historicGoals;
+	}
+
+	private int displayLevel(Goal g) {
+		// the live goals are placed per filter in AppData, detached ones carry their levels
+		return previewGoals == null && historicGoals == null ? AppData.getDisplayLevel(g) : g.displayLevel;
+	}
+
+	private long now() {
+		return historicGoals == null ? frameTime : historicTimestamp;
+	}
+
 	private double zoomEase(double f) {
 		return 1 - Math.pow(1 - f, 3);
 	}
 
-	private double start() {
-		if (zoomAnimationFinished) return startTimestamp;
-		double f = (System.currentTimeMillis() - timestampChangeTimestamp) / zoomAnimationDuration;
-		f = zoomEase(f);
+	/**
+	 * Computes the range shown in the frame painted at the given moment, with the transform from timestamps to
+	 * x coordinates and the markings levels; everything painted within a frame uses these.
+	 */
+	private void updateView(long now) {
+		frameTime = now;
+		double f = zoomAnimationFinished ? 1 : (now - timestampChangeTimestamp) / zoomAnimationDuration;
 		if (f >= 1) {
 			zoomAnimationFinished = true;
-			return startTimestamp;
+			viewStart = startTimestamp;
+			viewEnd = endTimestamp;
+		} else {
+			f = zoomEase(Math.max(f, 0));
+			viewStart = (1 - f) * startTimestampPrev + f * startTimestamp;
+			viewEnd = (1 - f) * endTimestampPrev + f * endTimestamp;
 		}
-		return (1 - f) * startTimestampPrev + f * startTimestamp;
-	}
+		pixelsPerMs = width / (viewEnd - viewStart);
 
-	private double end() {
-		if (zoomAnimationFinished) return endTimestamp;
-		double f = (System.currentTimeMillis() - timestampChangeTimestamp) / zoomAnimationDuration;
-		f = zoomEase(f);
-		if (f >= 1) {
-			zoomAnimationFinished = true;
-			return endTimestampPrev;
+		mainLevel = LEVELS.size() - 1;
+		for (int i = 0; i < LEVELS.size(); i++) {
+			if (markingsSpacing(i) > minPixelsBetweenNamedMarkings) {
+				mainLevel = i;
+				break;
+			}
 		}
-		return (1 - f) * endTimestampPrev + f * endTimestamp;
+		// the labels of the level below fade in through the second half of the way to the named markings spacing
+		double halfSpacing = minPixelsBetweenNamedMarkings / 2d;
+		levelFade = mainLevel == 0 ? 0 : Math.min(1, Math.max(0, (markingsSpacing(mainLevel - 1) - halfSpacing) / halfSpacing));
+	}
+
+	private double markingsSpacing(int level) {
+		return LEVELS.get(level).getAveragePeriodicity() * pixelsPerMs;
 	}
 
+	/**
+	 * Starts animating the view from where it is in the current frame to the given range.
+	 */
 	private void setTimestamps(double start, double end) {
-		startTimestampPrev = startTimestamp;
+		startTimestampPrev = viewStart;
 		startTimestamp = start;
-		endTimestampPrev = endTimestamp;
+		endTimestampPrev = viewEnd;
 		endTimestamp = end;
-		timestampChangeTimestamp = System.currentTimeMillis();
+		timestampChangeTimestamp = frameTime;
 		zoomAnimationFinished = false;
 	}
 
-	private int suitableMainMarkingsLevel() {
-		long range = (long) (end() - start());
-		for (int i = 0; i < LEVELS.size(); i++) {
-			TimelineMarkingsLevel l = LEVELS.get(i);
-			long expectedMarkings = range / l.getAveragePeriodicity();
-			if (expectedMarkings == 0) return i;
-			long pixelsPerMarking = width / expectedMarkings;
-			if (pixelsPerMarking > minPixelsBetweenNamedMarkings) return i;
-		}
-		return LEVELS.size() - 1;
-	}
-
-	private String msToUnitName(long ms) {
+	static String msToUnitName(long ms) {
 		if (ms < 0) throw new IllegalArgumentException("Negative argument");
 		long s = ms / 1000;
 		String result;
@@ -291,4 +582,8 @@ public class Timeline {
 		if (result.startsWith("1 ")) result = result.substring(0, result.length() - 1);
 		return result;
 	}
+
+	private record HoveredGoalInfoKey(Goal goal, String name, long initiated, boolean isCompleted, long completed,
+			String duration) {
+	}
 }
@@ -0,0 +1,100 @@
+package main;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Renders a timeline at an arbitrary size. PNGs are painted a band of rows at a time, each band split
+ * into tiles painted in parallel, and streamed out before the next band, so memory use depends on the
+ * width only.
+ */
+public class TimelineExporter {
+	private static final int TILE_WIDTH = 2048, BAND_HEIGHT = 64;
+	// a band of this width takes 50 MB
+	public static final int MAX_WIDTH = 200_000;
+
+	/**
+	 * @param timeline a {@link Timeline#exportCopy} of the timeline to render
+	 */
+	public static void exportPng(Timeline timeline, Font font, File file) throws IOException {
+		checkWidth(timeline);
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+		try (PngWriter png = new PngWriter(output, timeline.getWidth(), timeline.getHeight())) {
+			paintRows(timeline, font, png);
+		} catch (IOException | RuntimeException | Error e) {
+			try {
+				output.close(); // in case the writer wasn't created
+			} catch (IOException closing) {
+				e.addSuppressed(closing);
+			}
+			Files.deleteIfExists(file.toPath()); // rather than leaving a truncated image behind
+			throw e;
+		}
+	}
+
+	private static void paintRows(Timeline timeline, Font font, PngWriter png) throws IOException {
+		int width = timeline.getWidth(), height = timeline.getHeight();
+		int threads = Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			int[] band = new int[width * BAND_HEIGHT];
+			for (int bandY = 0; bandY < height; bandY += BAND_HEIGHT) {
+				int bandHeight = Math.min(BAND_HEIGHT, height - bandY);
+				List<Future<?>> tiles = new ArrayList<>();
+				for (int tileX = 0; tileX < width; tileX += TILE_WIDTH) {
+					int x = tileX, y = bandY;
+					tiles.add(executor.submit(() -> paintTile(timeline, font, x, y, Math.min(TILE_WIDTH, width - x),
+							bandHeight, band, width)));
+				}
+				for (Future<?> tile : tiles) tile.get();
+				for (int row = 0; row < bandHeight; row++) png.writeRow(band, row * width);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new IOException("Failed to render the timeline", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param timeline a {@link Timeline#exportCopy} of the timeline to render
+	 */
+	public static void exportSvg(Timeline timeline, Font font, File file) throws IOException {
+		checkWidth(timeline);
+		try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			timeline.writeSvg(out, font);
+		}
+	}
+
+	private static void checkWidth(Timeline timeline) {
+		if (timeline.getWidth() > MAX_WIDTH)
+			throw new IllegalArgumentException("Width " + timeline.getWidth() + " over the maximum of " + MAX_WIDTH);
+	}
+
+	private static void paintTile(Timeline timeline, Font font, int tileX, int tileY, int tileWidth, int tileHeight,
+			int[] band, int bandWidth) {
+		BufferedImage tile = new BufferedImage(tileWidth, tileHeight, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = tile.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setFont(font);
+		g.translate(-tileX, -tileY);
+		g.clipRect(tileX, tileY, tileWidth, tileHeight);
+		timeline.paintContent(g, tileX, tileX + tileWidth);
+		g.dispose();
+		tile.getRGB(0, 0, tileWidth, tileHeight, band, tileX, bandWidth);
+	}
+}
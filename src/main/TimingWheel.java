@@ -0,0 +1,102 @@
+package main;
+
+/**
+ * Hierarchical timing wheel: timers are hashed into slots by their expiry tick, with coarser wheels
+ * for far-off expiries that get cascaded into finer ones as time approaches. Scheduling and cancelling
+ * are O(1); advancing costs O(1) per elapsed tick plus the timers fired or cascaded.
+ */
+public class TimingWheel {
+	private static final int SLOT_BITS = 6, SLOTS = 1 << SLOT_BITS, LEVELS = 6;
+
+	private final long tickDuration;
+	private final Timer[][] wheels = new Timer[LEVELS][SLOTS]; // sentinels of circular lists
+	private long currentTick;
+
+	public TimingWheel(long tickDuration, long now) {
+		this.tickDuration = tickDuration;
+		currentTick = now / tickDuration;
+		for (Timer[] wheel : wheels) {
+			for (int i = 0; i < SLOTS; i++) {
+				Timer sentinel = new Timer(0, null);
+				sentinel.previous = sentinel.next = sentinel;
+				wheel[i] = sentinel;
+			}
+		}
+	}
+
+	/**
+	 * Runs the task on the first {@link #advance} past the given moment (on the next one if it has already passed).
+	 */
+	public Timer schedule(long at, Runnable task) {
+		long tick = Math.max(Math.floorDiv(at + tickDuration - 1, tickDuration), currentTick + 1);
+		Timer timer = new Timer(tick, task);
+		insert(timer);
+		return timer;
+	}
+
+	/**
+	 * Fires, in order of expiry, all the timers due up to the given moment.
+	 */
+	public void advance(long now) {
+		long targetTick = now / tickDuration;
+		while (currentTick < targetTick) {
+			currentTick++;
+			// cascade from the coarsest wheel, so timers moved down can be cascaded again within this tick
+			for (int level = LEVELS - 1; level > 0; level--) {
+				if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) continue;
+				Timer sentinel = wheels[level][slot(currentTick, level)];
+				Timer t = sentinel.next;
+				while (t != sentinel) {
+					Timer next = t.next;
+					t.unlink();
+					insert(t);
+					t = next;
+				}
+			}
+			Timer sentinel = wheels[0][slot(currentTick, 0)];
+			while (sentinel.next != sentinel) {
+				Timer t = sentinel.next;
+				t.unlink();
+				t.task.run();
+			}
+		}
+	}
+
+	private void insert(Timer t) {
+		long delta = t.expiryTick - currentTick;
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) level++;
+		// too far for the coarsest wheel: park it in its furthest slot, to be re-inserted from there
+		long tick = Math.min(t.expiryTick, currentTick + (1L << (SLOT_BITS * LEVELS)) - 1);
+		Timer sentinel = wheels[level][slot(tick, level)];
+		t.previous = sentinel.previous;
+		t.next = sentinel;
+		sentinel.previous.next = t;
+		sentinel.previous = t;
+	}
+
+	private static int slot(long tick, int level) {
+		return (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+	}
+
+	public static class Timer {
+		private final long expiryTick;
+		private final Runnable task;
+		private Timer previous, next;
+
+		private Timer(long expiryTick, Runnable task) {
+			this.expiryTick = expiryTick;
+			this.task = task;
+		}
+
+		public void cancel() {
+			if (next != null) unlink();
+		}
+
+		private void unlink() {
+			previous.next = next;
+			next.previous = previous;
+			previous = next = null;
+		}
+	}
+}
@@ -3,22 +3,37 @@ package main;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.File;
+import java.io.IOException;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 
 public class UI {
 	private static final int POPUP_DURATION = 3500;
+	private static final int FRAME_DELAY = 1000 / 60, ANIMATION_FRAME_DELAY = 1000 / 144;
 
 	private JFrame frame;
+	private Font font;
 	private JPanel content;
 	private Timeline timeline;
 	private List<Button> buttons;
+	private Slider historySlider;
+	private double pendingHistoryValue = Double.NaN; // slider position not shown yet
+	private StatisticsPanel statisticsPanel;
+	private String lastQuery;
+	private Minimap minimap;
+	private ApiServer apiServer; // null unless enabled
 	private int width, height;
 	private String popupMessage;
 	private long popupTimestamp;
 	private boolean popupAnimationFinished = true;
+	private boolean loaded; // whether AppData is initialized; until then the startup snapshot is shown
 
-	public UI() {
+	/**
+	 * @param snapshot shown until {@link #onDataLoaded()}, may be null
+	 */
+	public UI(StartupSnapshot snapshot) {
 		frame = new JFrame();
 		frame.setSize(1500, 900);
 		frame.setLocationRelativeTo(null);
@@ -27,11 +42,14 @@ public class UI {
 		frame.addWindowListener(new WindowAdapter() {
 			@Override
 			public void windowClosing(WindowEvent e) {
-				AppData.save();
+				if (!loaded) return;
+				AppData.close();
+				StartupSnapshot.write(AppData.getSnapshotFile(), timeline.getVisibleStart(), timeline.getVisibleEnd(),
+						AppData.getShownGoals());
 			}
 		});
 
-		Font font = new Font("SF Pro Display", Font.PLAIN, 25);
+		font = new Font("SF Pro Display", Font.PLAIN, 25);
 
 		content = new JPanel() {
 			@Override
@@ -64,14 +82,27 @@ public class UI {
 
 			@Override
 			public void mouseDragged(MouseEvent e) {
+				if (!loaded) return;
+				historySlider.mouseDragged(e);
+				minimap.mouseDragged(e);
 				timeline.mouseMoved(e);
 			}
 
 			@Override
 			public void mousePressed(MouseEvent e) {
+				if (!loaded) return;
 				buttons.forEach(b -> b.onClick(e));
+				historySlider.mousePressed(e);
+				minimap.mousePressed(e);
 				timeline.mousePressed(e);
 			}
+
+			@Override
+			public void mouseReleased(MouseEvent e) {
+				if (!loaded) return;
+				historySlider.mouseReleased(e);
+				minimap.mouseReleased(e);
+			}
 		};
 		content.addMouseListener(mouseAdapter);
 		content.addMouseMotionListener(mouseAdapter);
@@ -79,8 +110,36 @@ public class UI {
 		frame.setContentPane(content);
 
 		timeline = new Timeline();
+		timeline.setPreview(snapshot);
+		// a drag moves the slider many times a frame; only the last position of a frame is reconstructed
+		historySlider = new Slider(value -> pendingHistoryValue = value);
+		statisticsPanel = new StatisticsPanel();
+		statisticsPanel.setLocation(900, 640);
+		minimap = new Minimap(timeline::moveTo);
 		initButtons();
-		new Timer(1000 / 60, e -> content.repaint()).start();
+		new Timer(FRAME_DELAY, e -> {
+			if (loaded) AppData.getReminders().advance(System.currentTimeMillis());
+			if (apiServer != null) apiServer.publish();
+			content.repaint();
+			// zoom animations get frames for high refresh rate displays
+			((Timer) e.getSource()).setDelay(timeline.isAnimating() ? ANIMATION_FRAME_DELAY : FRAME_DELAY);
+		}).start();
+	}
+
+	/**
+	 * Switches from the startup snapshot to the live goals; called on the event dispatch thread once
+	 * {@link AppData#init()} is done.
+	 */
+	public void onDataLoaded() {
+		loaded = true;
+		AppData.getReminders().setListener(this::showPopup);
+		timeline.endPreview();
+		try {
+			apiServer = ApiServer.start();
+		} catch (IOException e) {
+			e.printStackTrace();
+			showPopup("Failed to start the API: " + e.getMessage());
+		}
 	}
 
 	private void initButtons() {
@@ -94,6 +153,11 @@ public class UI {
 		buttons.add(new Button("Cancel completion", 310, baseY + 80, 280, 30, this::onCancelCompletionClicked));
 		buttons.add(new Button("Rename", 50, baseY + 120, 250, 30, this::onRenameClicked));
 		buttons.add(new Button("Change goal start", 310, baseY + 120, 280, 30, this::onChangeGoalStartClicked));
+		buttons.add(new Button("Set tags", 600, baseY, 250, 30, this::onSetTagsClicked));
+		buttons.add(new Button("Filter by tags", 600, baseY + 40, 250, 30, this::onFilterClicked));
+		buttons.add(new Button("Export view", 600, baseY + 80, 250, 30, this::onExportClicked));
+		buttons.add(new Button("Set deadline", 600, baseY + 120, 250, 30, this::onSetDeadlineClicked));
+		buttons.add(new Button("Query", 900, baseY + 120, 250, 30, this::onQueryClicked));
 	}
 
 	private void onAddGoalClicked() {
@@ -192,6 +256,10 @@ public class UI {
 					showPopup("Cannot set the start after the end");
 					return;
 				}
+				if (g.hasDeadline() && unix >= g.getDeadline()) {
+					showPopup("Cannot set the start after the deadline");
+					return;
+				}
 				g.setInitiated(unix);
 				timeline.setClickListener(null);
 			});
@@ -200,13 +268,167 @@ public class UI {
 		showPopup("Click the goal to change its starting point");
 	}
 
+	private void onSetTagsClicked() {
+		timeline.setGoalClickListener(g -> {
+			timeline.setGoalClickListener(null);
+			String tags = JOptionPane.showInputDialog("Enter tags separated by spaces", String.join(" ", g.getTags()));
+			if (tags == null) return;
+			try {
+				g.setTags(List.of(tags.trim().split("\\s+")));
+			} catch (IllegalArgumentException e) {
+				showPopup(e.getMessage());
+			}
+		});
+		showPopup("Click the goal to set its tags");
+	}
+
+	private void onSetDeadlineClicked() {
+		timeline.setGoalClickListener(g -> {
+			timeline.setGoalClickListener(null);
+			if (g.isCompleted()) {
+				showPopup("This goal is already completed");
+				return;
+			}
+			if (g.hasDeadline()) {
+				int answer = JOptionPane.showConfirmDialog(frame, "Remove the deadline of \"" + g.getName() + "\"?",
+						"Deadline", JOptionPane.YES_NO_OPTION);
+				if (answer == JOptionPane.YES_OPTION) g.clearDeadline();
+				return;
+			}
+			timeline.setClickListener(unix -> {
+				if (unix <= g.getInitiated()) {
+					showPopup("Cannot set the deadline before the start");
+					return;
+				}
+				g.setDeadline(unix);
+				timeline.setClickListener(null);
+			});
+			showPopup("Click on when the goal is due");
+		});
+		showPopup("Click the goal to set its deadline");
+	}
+
+	private void onFilterClicked() {
+		String expression = JOptionPane.showInputDialog("Tags: " + String.join(", ", AppData.getTags())
+				+ "\nCombine with & | ! and parentheses, leave empty to show all", AppData.getFilter());
+		if (expression == null) return;
+		try {
+			AppData.setFilter(expression);
+		} catch (IllegalArgumentException e) {
+			showPopup("Invalid filter: " + e.getMessage());
+		}
+	}
+
+	private void onQueryClicked() {
+		String query = JOptionPane.showInputDialog(frame, "For example: where name contains \"gym\" and weekday(started)"
+				+ " in (sat, sun)\ngroup by month(started) select count, avg(duration)", lastQuery);
+		if (query == null) return;
+		lastQuery = query;
+		GoalQuery.Result result;
+		try {
+			result = GoalQuery.run(query, AppData.getGoals());
+		} catch (IllegalArgumentException e) {
+			showPopup("Invalid query: " + e.getMessage());
+			return;
+		}
+		String[][] rows = result.rows().stream().map(row -> row.toArray(String[]::new)).toArray(String[][]::new);
+		JTable table = new JTable(rows, result.columns().toArray());
+		table.setEnabled(false);
+		JScrollPane pane = new JScrollPane(table);
+		pane.setPreferredSize(new Dimension(600, Math.min(400, table.getRowHeight() * (rows.length + 2))));
+		JOptionPane.showMessageDialog(frame, pane, result.matched() + " goals matched in "
+				+ result.elapsedNanos() / 1000_000 + " ms", JOptionPane.PLAIN_MESSAGE);
+	}
+
+	private void onExportClicked() {
+		JFileChooser chooser = new JFileChooser();
+		chooser.setDialogTitle("Export as .png or .svg");
+		if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+		File file = chooser.getSelectedFile();
+		boolean svg = file.getName().toLowerCase().endsWith(".svg");
+		if (!svg && !file.getName().toLowerCase().endsWith(".png")) file = new File(file.getPath() + ".png");
+
+		String widthInput = JOptionPane.showInputDialog("Image width in pixels", 20_000);
+		if (widthInput == null) return;
+		int exportWidth;
+		try {
+			exportWidth = Integer.parseInt(widthInput.trim());
+		} catch (NumberFormatException e) {
+			showPopup("Not a number: " + widthInput);
+			return;
+		}
+		if (exportWidth <= 0 || exportWidth > TimelineExporter.MAX_WIDTH) {
+			showPopup("The width has to be between 1 and " + TimelineExporter.MAX_WIDTH);
+			return;
+		}
+
+		String rangeInput = JOptionPane.showInputDialog("Days to export, like 2025-01-01 2025-06-30,"
+				+ " or nothing for the visible range", "");
+		if (rangeInput == null) return;
+		long start = timeline.getVisibleStart(), end = timeline.getVisibleEnd();
+		if (!rangeInput.isBlank()) {
+			String[] days = rangeInput.trim().split("\\s+");
+			try {
+				if (days.length != 2) throw new IllegalArgumentException();
+				start = GoalQuery.parseDate(days[0]);
+				end = GoalQuery.parseDate(days[1]) + 86400_000; // through the end of the last day
+			} catch (IllegalArgumentException | DateTimeParseException e) {
+				showPopup("Expected two dates like 2025-01-01 2025-06-30");
+				return;
+			}
+			if (start >= end) {
+				showPopup("The range has to end after it starts");
+				return;
+			}
+		}
+
+		Timeline copy = timeline.exportCopy(exportWidth, getAlignmentForTimeline().height, start, end);
+		File target = file;
+		showPopup("Exporting to " + target.getName());
+		new Thread(() -> {
+			try {
+				if (svg) TimelineExporter.exportSvg(copy, font, target);
+				else TimelineExporter.exportPng(copy, font, target);
+				SwingUtilities.invokeLater(() -> showPopup("Exported to " + target.getName()));
+			} catch (IOException | RuntimeException | Error e) {
+				// reported rather than left to kill the thread silently, running out of memory included
+				e.printStackTrace();
+				String message = e.getMessage() == null ? e.toString() : e.getMessage();
+				SwingUtilities.invokeLater(() -> showPopup("Export failed: " + message));
+			}
+		}, "Export").start();
+	}
+
+	private void showHistoryAt(double value) {
+		if (value == 1) {
+			timeline.setHistoricView(null, 0);
+			return;
+		}
+		History history = AppData.getHistory();
+		long first = history.firstTimestamp();
+		long timestamp = first + (long) (value * (System.currentTimeMillis() - first));
+		timeline.setHistoricView(history.goalsAt(timestamp), timestamp);
+	}
+
 	public void setVisible(boolean visible) {
 		frame.setVisible(visible);
 	}
 
 	private void paint(Graphics2D g) {
+		if (!Double.isNaN(pendingHistoryValue)) {
+			showHistoryAt(pendingHistoryValue);
+			pendingHistoryValue = Double.NaN;
+		}
 		timeline.paint(g);
+		historySlider.paint(g);
 		buttons.forEach(b -> b.paint(g));
+		if (!loaded) {
+			g.setColor(Color.gray);
+			g.drawString("Loading goals...", 900, 680);
+			return;
+		}
+		statisticsPanel.paint(g, timeline.getVisibleStart(), timeline.getVisibleEnd());
+		minimap.paint(g, timeline.getVisibleStart(), timeline.getVisibleEnd());
 	}
 
 	private void onResized(int newWidth, int newHeight) {
@@ -215,6 +437,8 @@ public class UI {
 
 		Rectangle r = getAlignmentForTimeline();
 		timeline.setBounds(r.x, r.y, r.width, r.height);
+		historySlider.setBounds(50, r.y + r.height + 15, width - 100, 20);
+		minimap.setBounds(50, 815, width - 100, 30);
 	}
 
 	private Rectangle getAlignmentForTimeline() {